@@ -0,0 +1,199 @@
+package Compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.Token;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * @brief Throughput of every compiler phase
+ *
+ *        Every benchmark only measures its own phase, the input of the phase
+ *        is prepared before each invocation. Besides ops/s JMH reports the
+ *        'lines' counter, the number of source lines compiled per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhaseBenchmark {
+
+	/**
+	 * @brief Source and tokens of the workload
+	 */
+	@State(Scope.Benchmark)
+	public static class Input {
+		@Param({ "codegen", "synthetic-100", "synthetic-1000" })
+		public String workload;
+
+		public Workload programs;
+		public Vector<List<? extends Token>> tokens = new Vector<List<? extends Token>>();
+
+		private PrintStream out;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			Log.debug = false;
+			Log.exception = true;
+
+			programs = Workload.load(workload);
+			for(int i = 0; i < programs.sources.size(); i++) {
+				tokens.add(lex(programs.sources.get(i)));
+			}
+
+			// CodeGenVisitor prints the instructions
+			out = System.out;
+			System.setOut(new PrintStream(new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+			}));
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			System.setOut(out);
+		}
+	}
+
+	/**
+	 * @brief Source lines compiled
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Lines {
+		public long lines;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			lines = 0;
+		}
+	}
+
+	/**
+	 * @brief Fresh trees after parsing
+	 */
+	@State(Scope.Thread)
+	public static class Parsed {
+		public Vector<Ast.Node> trees = new Vector<Ast.Node>();
+
+		@Setup(Level.Invocation)
+		public void setup(Input input) {
+			trees.clear();
+			for(int i = 0; i < input.tokens.size(); i++) {
+				trees.add(parse(input.tokens.get(i)));
+			}
+		}
+	}
+
+	/**
+	 * @brief Fresh trees after building the symbol table
+	 */
+	@State(Scope.Thread)
+	public static class Resolved {
+		public Vector<Ast.Node> trees = new Vector<Ast.Node>();
+
+		@Setup(Level.Invocation)
+		public void setup(Input input) {
+			trees.clear();
+			for(int i = 0; i < input.tokens.size(); i++) {
+				Ast.Node root = parse(input.tokens.get(i));
+				new SymbolTableVisitor().visit(root);
+				trees.add(root);
+			}
+		}
+	}
+
+	/**
+	 * @brief Fresh trees after semantic analysis
+	 */
+	@State(Scope.Thread)
+	public static class Checked {
+		public Vector<Ast.Node> trees = new Vector<Ast.Node>();
+
+		@Setup(Level.Invocation)
+		public void setup(Input input) {
+			trees.clear();
+			for(int i = 0; i < input.tokens.size(); i++) {
+				Ast.Node root = parse(input.tokens.get(i));
+				new SymbolTableVisitor().visit(root);
+				new SemanticVisitor().visit(root);
+				trees.add(root);
+			}
+		}
+	}
+
+	private static List<? extends Token> lex(String source) {
+		CLexer lexer = new CLexer(new ANTLRInputStream(source));
+		return lexer.getAllTokens();
+	}
+
+	private static Ast.Node parse(List<? extends Token> tokens) {
+		AstParser parser = new AstParser(new CommonTokenStream(
+				new ListTokenSource(tokens)));
+		return parser.buildAst();
+	}
+
+	@Benchmark
+	public void lexer(Input input, Lines lines, Blackhole blackhole) {
+		for(int i = 0; i < input.programs.sources.size(); i++) {
+			blackhole.consume(lex(input.programs.sources.get(i)));
+		}
+		lines.lines += input.programs.lines;
+	}
+
+	@Benchmark
+	public void parser(Input input, Lines lines, Blackhole blackhole) {
+		for(int i = 0; i < input.tokens.size(); i++) {
+			blackhole.consume(parse(input.tokens.get(i)));
+		}
+		lines.lines += input.programs.lines;
+	}
+
+	@Benchmark
+	public void symbolTable(Input input, Parsed parsed, Lines lines) {
+		for(int i = 0; i < parsed.trees.size(); i++) {
+			new SymbolTableVisitor().visit(parsed.trees.get(i));
+		}
+		lines.lines += input.programs.lines;
+	}
+
+	@Benchmark
+	public void semantics(Input input, Resolved resolved, Lines lines) {
+		for(int i = 0; i < resolved.trees.size(); i++) {
+			new SemanticVisitor().visit(resolved.trees.get(i));
+		}
+		lines.lines += input.programs.lines;
+	}
+
+	@Benchmark
+	public void codeGen(Input input, Checked checked, Lines lines) {
+		for(int i = 0; i < checked.trees.size(); i++) {
+			new CodeGenVisitor().visit(checked.trees.get(i));
+		}
+		lines.lines += input.programs.lines;
+	}
+}
@@ -0,0 +1,59 @@
+package Compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * @brief Programs compiled by the benchmarks
+ *
+ *        "codegen" are the programs in src/test/input/codegen (the directory
+ *        can be changed with -Dcorpus=...), "synthetic-N" is a program with
+ *        N functions made by WorkloadGenerator.
+ */
+public class Workload {
+
+	public Vector<String> sources = new Vector<String>();
+	public long lines = 0;
+
+	public static Workload load(String name) throws IOException {
+		Workload workload = new Workload();
+
+		if(name.equals("codegen")) {
+			File[] files = new File(System.getProperty("corpus",
+					"../src/test/input/codegen")).listFiles();
+			if(files == null) {
+				throw new IOException("Corpus not found, run from benchmarks/ or set -Dcorpus");
+			}
+			Arrays.sort(files);
+
+			for(int i = 0; i < files.length; i++) {
+				if(files[i].getName().endsWith(".c")) {
+					workload.add(new String(Files.readAllBytes(files[i]
+							.toPath()), StandardCharsets.UTF_8));
+				}
+			}
+		} else if(name.startsWith("synthetic-")) {
+			WorkloadGenerator generator = new WorkloadGenerator();
+			generator.functions = Integer.parseInt(name.substring("synthetic-"
+					.length()));
+			workload.add(generator.generate());
+		} else {
+			throw new IllegalArgumentException("Unknown workload: " + name);
+		}
+
+		return workload;
+	}
+
+	private void add(String source) {
+		sources.add(source);
+		for(int i = 0; i < source.length(); i++) {
+			if(source.charAt(i) == '\n') {
+				lines += 1;
+			}
+		}
+	}
+}
@@ -77,31 +77,27 @@ block
 	;
 
 expr
-	: '(' type ')' expr {handleTypeCast();}
+	: expr '[' expr ']' {handleSubscript();}
+	| expr op=('++'|'--') {handleUnaryOperator($op.text);}
+	| '(' type ')' expr {handleTypeCast();}
 	| '(' expr ')'
-	| expr '[' expr ']' {handleSubscript();}
 	| '&' expr {handleReference();}
 	| '*' expr {handleDereference();}
 	| id=ID {handleID($id.text);}
-	| '!' expr {handleUnaryOperator("!");}
-	| '-' expr {handleUnaryOperator("-");}
-	| expr '/' expr {handleBinaryOperator("/");}
-	| expr '*' expr {handleBinaryOperator("*");}
-	| expr '+' expr {handleBinaryOperator("+");}
-	| expr '-' expr {handleBinaryOperator("-");}
-	| expr '=' expr {handleBinaryOperator("=");}
-	| varDecl
-	| expr '==' expr {handleBinaryOperator("==");}
-	| expr '!=' expr {handleBinaryOperator("!=");}
-	| expr '<' expr {handleBinaryOperator("<");}
-	| expr '<=' expr {handleBinaryOperator("<=");}
-	| expr '>' expr {handleBinaryOperator(">");}
-	| expr '>=' expr {handleBinaryOperator(">=");}
-	| expr '++' {handleUnaryOperator("++");}
-	| expr '--' {handleUnaryOperator("--");}
-	| id=ID '(' {startParams();} (param (',' param)*)? ')' {handleFunctionCall($id.text);}
+	| op=('!'|'~'|'-') expr {handleUnaryOperator($op.text);}
+	| expr op=('*'|'/'|'%') expr {handleBinaryOperator($op.text);}
+	| expr op=('+'|'-') expr {handleBinaryOperator($op.text);}
+	| expr op=('<<'|'>>') expr {handleBinaryOperator($op.text);}
+	| expr op=('<'|'<='|'>'|'>=') expr {handleBinaryOperator($op.text);}
+	| expr op=('=='|'!=') expr {handleBinaryOperator($op.text);}
+	| expr '&' expr {handleBinaryOperator("&");}
+	| expr '^' expr {handleBinaryOperator("^");}
+	| expr '|' expr {handleBinaryOperator("|");}
 	| expr '&&' expr {handleBinaryOperator("&&");}
 	| expr '||' expr {handleBinaryOperator("||");}
+	| <assoc=right> expr op=('='|'+='|'-='|'*='|'/='|'%='|'<<='|'>>='|'&='|'|='|'^=') expr {handleBinaryOperator($op.text);}
+	| varDecl
+	| id=ID '(' {startParams();} (param (',' param)*)? ')' {handleFunctionCall($id.text);}
 	| literal
 	;
 
@@ -172,7 +168,7 @@ WHITESPACE : [ \t]+ -> skip;
 ID : [a-zA-Z_][a-zA-Z_0-9]*;
 CHAR : '\'' (ESC|.) '\'';
 STRING : '"' (ESC|.)*? '"';
-ESC : '\\"' | '\\\\' | '\\n' | '\\t' | '\\0';
+ESC : '\\' ( [abfnrtv'"?\\] | [0-7] [0-7]? [0-7]? | 'x' [0-9a-fA-F]+ );
 INT :  [0-9]+ ;
 SINGLELINECOMMENT : '//' .*? NEWLINE -> skip;
 MULTILINECOMMENT : '/*' .*? '*/' -> skip;
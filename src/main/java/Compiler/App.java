@@ -1,5 +1,14 @@
 package Compiler;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.CommonTokenStream;
 
@@ -7,25 +16,348 @@ import org.antlr.v4.runtime.CommonTokenStream;
  * @brief Main
  */
 public class App {
+
+	public static boolean inline = false;
+	public static boolean tailCalls = false;
+	public static boolean jumpThreading = false;
+	public static boolean strengthReduction = false;
+	public static boolean loopInvariantMotion = false;
+	public static boolean commonSubexpressions = false;
+	public static boolean foldBuiltins = false;
+	public static boolean bulkData = false; // keep .data instructions in the output
+	public static boolean printMetrics = false;
+	public static String metricsFile = null;
+	public static String lineMapFile = null;
+	public static String incrementalFile = null;
+	public static String cacheDirectory = null;
+	public static long cacheSize = 64 * 1024 * 1024;
+
+	/**
+	 * Parse the command line options
+	 *
+	 * @param args
+	 */
+	public static void parseArguments(String[] args) {
+		for(int i = 0; i < args.length; i++) {
+			switch(args[i]) {
+			case "-O":
+				inline = true;
+				tailCalls = true;
+				jumpThreading = true;
+				strengthReduction = true;
+				loopInvariantMotion = true;
+				commonSubexpressions = true;
+				foldBuiltins = true;
+				break;
+			case "-finline":
+				inline = true;
+				break;
+			case "-finline-report":
+				inline = true;
+				Inliner.report = true;
+				break;
+			case "-ftail-calls":
+				tailCalls = true;
+				break;
+			case "-ftail-calls-report":
+				tailCalls = true;
+				TailCallOptimizer.report = true;
+				break;
+			case "-fjump-threading":
+				jumpThreading = true;
+				break;
+			case "-fjump-threading-report":
+				jumpThreading = true;
+				JumpThreading.report = true;
+				break;
+			case "-fstrength-reduction":
+				strengthReduction = true;
+				break;
+			case "-fstrength-reduction-report":
+				strengthReduction = true;
+				StrengthReduction.report = true;
+				break;
+			case "-floop-invariant-motion":
+				loopInvariantMotion = true;
+				break;
+			case "-floop-invariant-motion-report":
+				loopInvariantMotion = true;
+				LoopInvariantMotion.report = true;
+				break;
+			case "-fcse":
+				commonSubexpressions = true;
+				break;
+			case "-fcse-report":
+				commonSubexpressions = true;
+				CommonSubexpressions.report = true;
+				break;
+			case "-ffold-builtins":
+				foldBuiltins = true;
+				break;
+			case "-ffold-builtins-report":
+				foldBuiltins = true;
+				BuiltinFolding.report = true;
+				break;
+			case "-fmetrics":
+				printMetrics = true;
+				break;
+			case "-fbulk-data":
+				bulkData = true;
+				break;
+			default:
+				if(args[i].startsWith("-finline-size=")) {
+					inline = true;
+					Inliner.maxSize = Integer.parseInt(args[i]
+							.substring("-finline-size=".length()));
+				} else if(args[i].startsWith("-fmetrics-json=")) {
+					metricsFile = args[i].substring("-fmetrics-json=".length());
+				} else if(args[i].startsWith("-fcache=")) {
+					cacheDirectory = args[i].substring("-fcache=".length());
+				} else if(args[i].startsWith("-fcache-size=")) {
+					cacheSize = Long.parseLong(args[i].substring("-fcache-size="
+							.length())) * 1024 * 1024;
+				} else if(args[i].startsWith("-fincremental=")) {
+					incrementalFile = args[i].substring("-fincremental="
+							.length());
+				} else if(args[i].startsWith("-fline-map=")) {
+					lineMapFile = args[i].substring("-fline-map=".length());
+				} else {
+					System.err.println("Unknown option: " + args[i]);
+					System.exit(1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Compile a program with the current options
+	 *
+	 * @param input
+	 *            : source of the program
+	 * @param out
+	 *            : stream the instructions are written to
+	 * @param metrics
+	 *            : measures the phases, counts are only added when metrics
+	 *            are requested
+	 * @return code generator holding the instructions
+	 */
+	public static CodeGenVisitor compile(ANTLRInputStream input,
+			PrintStream out, Metrics metrics) {
+		return compile(input, out, metrics, null);
+	}
+
+	/**
+	 * Compile a program, reusing the code of unchanged declarations
+	 *
+	 * @param input
+	 *            : source of the program
+	 * @param out
+	 *            : stream the instructions are written to
+	 * @param metrics
+	 *            : measures the phases
+	 * @param cache
+	 *            : code of earlier compilations, null to generate all code
+	 * @return code generator holding the instructions
+	 */
+	public static CodeGenVisitor compile(ANTLRInputStream input,
+			PrintStream out, Metrics metrics, FunctionCache cache) {
+		metrics.start("lexer");
+		CLexer lexer = new CLexer(input);
+		CommonTokenStream tokens = new CommonTokenStream(lexer);
+		tokens.fill();
+
+		metrics.start("parser");
+		AstParser parser = new AstParser(tokens);
+		Ast.Node root = parser.buildAst();
+
+		// All errors and warnings of the analysis are reported together
+		Log.collect();
+		SymbolTableVisitor symbolTable = new SymbolTableVisitor();
+		Visitor visitor = new SemanticVisitor();
+		try {
+			metrics.start("symbol table");
+			symbolTable.visit(root);
+
+			metrics.start("semantics");
+			visitor.visit(root);
+			Log.report();
+		} finally {
+			Log.discard();
+		}
+		if(foldBuiltins) {
+			metrics.start("builtin folding");
+			visitor = new BuiltinFolding();
+			visitor.visit(root);
+
+			// Literals that were only arguments of folded calls are gone
+			symbolTable.poolStrings((Ast.FileNode) root);
+		}
+		// Before inlining, so calls to isdigit and chartoint can be moved
+		if(loopInvariantMotion) {
+			metrics.start("loop invariant motion");
+			visitor = new LoopInvariantMotion();
+			visitor.visit(root);
+		}
+		if(inline) {
+			metrics.start("inliner");
+			visitor = new Inliner();
+			visitor.visit(root);
+		}
+		// After inlining, the inlined bodies repeat the arguments
+		if(commonSubexpressions) {
+			metrics.start("common subexpressions");
+			visitor = new CommonSubexpressions();
+			visitor.visit(root);
+		}
+		if(tailCalls) {
+			metrics.start("tail calls");
+			visitor = new TailCallOptimizer();
+			visitor.visit(root);
+		}
+		if(strengthReduction) {
+			metrics.start("strength reduction");
+			visitor = new StrengthReduction();
+			visitor.visit(root);
+		}
+
+		metrics.start("code generation");
+		if(cache != null) {
+			cache.start(tokens);
+			((Ast.FileNode) root).cache = cache;
+		}
+		CodeGenVisitor codeGen = new CodeGenVisitor(out);
+		codeGen.visit(root);
+		metrics.stop();
+
+		if(printMetrics || metricsFile != null) {
+			metrics.count("lines", lexer.getLine());
+			metrics.count("tokens", tokens.size());
+			metrics.count("ast nodes", root.countNodes());
+			metrics.count("symbols", symbolTable.symbolCount);
+			metrics.count("string pool bytes", symbolTable.stringCounter);
+			metrics.count("string bytes saved", symbolTable.stringLiteralSize
+					- symbolTable.stringCounter);
+			metrics.count("instructions", codeGen.getInstructions().size());
+			if(cache != null) {
+				metrics.count("cached declarations", cache.hits);
+				metrics.count("generated declarations", cache.misses);
+			}
+		}
+
+		return codeGen;
+	}
+
+	/**
+	 * Read a stream until the end
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		byte[] data = new byte[4096];
+		int n;
+		while((n = in.read(data)) != -1) {
+			buffer.write(data, 0, n);
+		}
+
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Compile a program and keep everything the compiler writes
+	 *
+	 * @param source
+	 * @return
+	 */
+	private static CompileCache.Entry compileToEntry(byte[] source)
+			throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		PrintStream outStream = new PrintStream(out);
+		PrintStream errStream = new PrintStream(err);
+		PrintStream systemErr = System.err;
+
+		CompileCache.Entry entry = new CompileCache.Entry();
+		Log.setOut(outStream);
+		Log.setExit(false);
+		System.setErr(errStream);
+		try {
+			compile(new ANTLRInputStream(new ByteArrayInputStream(source)),
+					outStream, new Metrics());
+		} catch(Log.FatalException e) {
+			entry.status = 1;
+		} finally {
+			System.setErr(systemErr);
+			Log.setOut(System.out);
+			Log.setExit(true);
+		}
+
+		outStream.flush();
+		errStream.flush();
+		entry.out = out.toByteArray();
+		entry.err = err.toByteArray();
+		return entry;
+	}
+
 	public static void main(String[] args) {
 
 		Log.debug = false;
 		Log.exception = false;
 
+		parseArguments(args);
+
+		Metrics metrics = new Metrics();
+
 		ANTLRInputStream input;
 		try {
-			input = new ANTLRInputStream(System.in);
-			CLexer lexer = new CLexer(input);
-			CommonTokenStream tokens = new CommonTokenStream(lexer);
-			AstParser parser = new AstParser(tokens);
-			Ast.Node root = parser.buildAst();
-			Visitor visitor = new SymbolTableVisitor();
-			visitor.visit(root);
-			visitor = new SemanticVisitor();
-			visitor.visit(root);
-			visitor = new CodeGenVisitor();
-			visitor.visit(root);
+			byte[] source = readAll(System.in);
+
+			// Files next to the output and metrics need a real compilation
+			if(cacheDirectory != null && !printMetrics && metricsFile == null
+					&& lineMapFile == null && incrementalFile == null) {
+				CompileCache outputCache = new CompileCache(cacheDirectory,
+						cacheSize);
+				String key = CompileCache.key(source, args);
+				CompileCache.Entry entry = outputCache.get(key);
+				if(entry == null) {
+					entry = compileToEntry(source);
+					outputCache.put(key, entry);
+				}
+
+				System.out.write(entry.out);
+				System.out.flush();
+				System.err.write(entry.err);
+				System.err.flush();
+				if(entry.status != 0) {
+					System.exit(entry.status);
+				}
+				return;
+			}
+
+			input = new ANTLRInputStream(new ByteArrayInputStream(source));
+			FunctionCache cache = null;
+			if(incrementalFile != null) {
+				cache = FunctionCache.load(incrementalFile);
+			}
+			CodeGenVisitor codeGen = compile(input, System.out, metrics, cache);
+			if(cache != null) {
+				cache.save(incrementalFile);
+			}
 			// System.out.println(root.toString());
+
+			if(printMetrics) {
+				System.err.print(metrics.toString());
+			}
+			if(metricsFile != null) {
+				Files.write(Paths.get(metricsFile), metrics.toJson().getBytes(
+						StandardCharsets.UTF_8));
+			}
+			if(lineMapFile != null) {
+				Files.write(Paths.get(lineMapFile), codeGen.getLineMap()
+						.toString().getBytes(StandardCharsets.UTF_8));
+			}
 		} catch(Exception e) {
 			e.printStackTrace();
 		}
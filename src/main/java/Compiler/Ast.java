@@ -1,5 +1,7 @@
 package Compiler;
 
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.Vector;
 
 import Compiler.Ast.TypeNode;
@@ -12,12 +14,15 @@ public class Ast {
 	/**
 	 * @brief Abstract base class of Node
 	 */
-	public static abstract class Node {
+	public static abstract class Node implements Cloneable {
 
 		// handleBlock() uses this to know which nodes should be added to the
 		// block.
 		public int scope;
-		public int line = -1;
+		public int line = -1; // where the parser finished the node
+		public int startLine = -1;
+		public int firstToken = -1; // index in the token stream
+		public int lastToken = -1;
 
 		/**
 		 * Abstract visitor node
@@ -80,6 +85,60 @@ public class Ast {
 			return children.size() > 0;
 		}
 
+		/**
+		 * Copy this node and all of its children
+		 *
+		 * Symbols and types of expressions are shared with the original node.
+		 *
+		 * @return copy without parent
+		 */
+		public Node deepCopy() {
+			Node copy = null;
+			try {
+				copy = (Node) clone();
+			} catch(CloneNotSupportedException e) {
+				Log.fatal("Can't copy " + getClass().getName(), line);
+			}
+
+			copy.parent = null;
+			copy.children = new Vector<Node>();
+			for(int i = 0; i < children.size(); i++) {
+				if(children.get(i) == null) {
+					copy.children.add(null);
+				} else {
+					copy.addChild(i, children.get(i).deepCopy());
+				}
+			}
+
+			return copy;
+		}
+
+		/**
+		 * Get the first line of the node, for nodes that weren't parsed this
+		 * is the line they were created for
+		 *
+		 * @return
+		 */
+		public int getStartLine() {
+			return startLine != -1 ? startLine : line;
+		}
+
+		/**
+		 * Count this node and all of its children
+		 *
+		 * @return number of nodes in the subtree
+		 */
+		public int countNodes() {
+			int size = 1;
+			for(int i = 0; i < children.size(); i++) {
+				if(children.get(i) != null) {
+					size += children.get(i).countNodes();
+				}
+			}
+
+			return size;
+		}
+
 		public void insertLefMostLeaf(Node n) {
 			Assert.Assert(this instanceof PointerTypeNode);
 			if(hasChildren()) {
@@ -152,7 +211,7 @@ public class Ast {
 				instructions.addAll(children.get(children.size() - 1 - i).codeR());
 			}
 
-			return instructions;
+			return CodeGenVisitor.data(instructions);
 		}
 		
 	}
@@ -161,6 +220,9 @@ public class Ast {
 		private Vector<Node> declarations = new Vector<Node>();
 
 		public Vector<String> stringLiterals = new Vector<String>();
+
+		// Reuses the code of unchanged declarations, null to generate all code
+		public FunctionCache cache = null;
 		
 		public void addDeclaration(int pos, Node declaration) {
 			Assert.Assert(declaration instanceof DeclarationNode
@@ -207,12 +269,15 @@ public class Ast {
 			}
 			
 			// Store static strings
+			Vector<Integer> strings = new Vector<Integer>();
 			for(int i = 0; i < stringLiterals.size(); i++) {
 				for(int c = 0; c < stringLiterals.get(i).length(); c++) {
-					instructions.add("ldc c " + (int)stringLiterals.get(i).charAt(c));
+					strings.add((int)stringLiterals.get(i).charAt(c));
 				}
-				instructions.add("ldc c 0");
-
+				strings.add(0);
+			}
+			if(strings.size() > 0) {
+				instructions.add(CodeGenVisitor.data("c", strings));
 			}
 
 			// Pretend that global scope is a function enclosing everything else
@@ -222,7 +287,8 @@ public class Ast {
 			instructions.add("ssp " + Integer.toString(varDecls));
 			for(int i = 0; i < children.size(); i++) {
 				if(children.get(i) instanceof DeclarationNode) {
-					instructions.addAll(children.get(i).code());
+					instructions.add(CodeGenVisitor.lineMarker(children.get(i).getStartLine()));
+					instructions.addAll(declarationCode(children.get(i)));
 				}
 			}
 
@@ -232,13 +298,35 @@ public class Ast {
 
 			for(int i = 0; i < children.size(); i++) {
 				if(children.get(i) instanceof FunctionDeclarationNode) {
-					instructions.addAll(children.get(i).code());
+					instructions.addAll(declarationCode(children.get(i)));
+				}
+			}
+
+			// Only the routines of operators that aren't written out inline
+			// are called, cached code included
+			Set<Operator> routines = EnumSet.noneOf(Operator.class);
+			for(int i = 0; i < instructions.size(); i++) {
+				String target = ControlFlowGraph.getTarget(instructions.get(i));
+				if(target != null && Operator.routine(target) != null) {
+					routines.add(Operator.routine(target));
 				}
 			}
+			for(Operator operator : routines) {
+				instructions.add(CodeGenVisitor.lineMarker(0));
+				instructions.addAll(BuiltinCode.generateRoutine(operator));
+			}
 
 			return instructions;
 		}
 
+		private Vector<String> declarationCode(Node declaration) {
+			if(cache == null) {
+				return declaration.code();
+			}
+
+			return cache.code(this, declaration);
+		}
+
 		@Override
 		public void visit(Visitor visitor) {
 			visitor.visit(this);
@@ -525,6 +613,18 @@ public class Ast {
 			return instructions;
 		}
 
+		@Override
+		public Vector<String> codeJump(String label, boolean value) {
+			Vector<String> instructions = new Vector<String>();
+
+			// The outcome is known at compile time
+			if((this.value != 0) == value) {
+				instructions.add("ujp " + label);
+			}
+
+			return instructions;
+		}
+
 	}
 
 	public static class CharNode extends LiteralNode {
@@ -802,9 +902,17 @@ public class Ast {
 			}
 
 			if(symbol.builtin) {
-				instructions.addAll(generateBuiltin());
+				// All code of a builtin belongs to the line that includes it
+				Vector<String> builtin = generateBuiltin();
+				for(int i = 0; i < builtin.size(); i++) {
+					instructions.add(builtin.get(i));
+					if(builtin.get(i).endsWith(":")) {
+						instructions.add(CodeGenVisitor.lineMarker(getStartLine()));
+					}
+				}
 			} else {
 				instructions.add(symbol.label + ":");
+				instructions.add(CodeGenVisitor.lineMarker(getStartLine()));
 				instructions.addAll(getBlock().code());
 			}
 
@@ -931,6 +1039,51 @@ public class Ast {
 
 	}
 
+	/**
+	 * @brief Function call with the body of the callee substituted
+	 *
+	 *        The children are a declaration for every parameter of the callee,
+	 *        initialized with the arguments of the call, followed by the
+	 *        expression the callee returns.
+	 */
+	public static class InlinedCallNode extends ExpressionNode {
+		public String id;
+		public FuncSymbol symbol; // the callee
+
+		public InlinedCallNode(String id, FuncSymbol symbol, TypeNode type) {
+			this.id = id;
+			this.symbol = symbol;
+			this.type = type;
+		}
+
+		public ExpressionNode getExpression() {
+			return (ExpressionNode) children.lastElement();
+		}
+
+		@Override
+		public Vector<String> code() {
+			return codeR();
+		}
+
+		@Override
+		public Vector<String> codeR() {
+			Vector<String> instructions = new Vector<String>();
+
+			// Store the arguments in the temporaries of the parameters
+			for(int i = 0; i < children.size() - 1; i++) {
+				instructions.addAll(children.get(i).code());
+			}
+			instructions.addAll(getExpression().codeR());
+
+			return instructions;
+		}
+
+		@Override
+		public void visit(Visitor visitor) {
+			visitor.visit(this);
+		}
+	}
+
 	public static abstract class StatementNode extends Node {
 	}
 
@@ -955,6 +1108,30 @@ public class Ast {
 		public TypeNode getType() {
 			return this.type;
 		}
+
+		/**
+		 * Generate code that jumps to label if the expression evaluates to
+		 * value, and falls through otherwise.
+		 *
+		 * @param label
+		 *            : label to jump to
+		 * @param value
+		 *            : truth value on which to jump
+		 * @return
+		 */
+		public Vector<String> codeJump(String label, boolean value) {
+			Vector<String> instructions = new Vector<String>();
+
+			instructions.addAll(codeR());
+			instructions.add("conv " + CodeGenVisitor.typeToPtype(getType())
+					+ " b");
+			if(value) {
+				instructions.add("not");
+			}
+			instructions.add("fjp " + label);
+
+			return instructions;
+		}
 	}
 
 	public static class ReferenceExpressionNode extends ExpressionNode {
@@ -1210,6 +1387,7 @@ public class Ast {
 			}
 
 			for(int i = 0; i < children.size(); i++) {
+				instructions.add(CodeGenVisitor.lineMarker(children.get(i).getStartLine()));
 				boolean functionDecl = children.get(i) instanceof FunctionDeclarationNode;
 				if(functionDecl) {
 					String skip = CodeGenVisitor.getUniqueLabel();
@@ -1267,10 +1445,11 @@ public class Ast {
 	}
 
 	public static class BinaryOperatorNode extends ExpressionNode {
-		public String operator;
+		public Operator operator;
 
-		public BinaryOperatorNode(String operator, ExpressionNode left,
+		public BinaryOperatorNode(Operator operator, ExpressionNode left,
 				ExpressionNode right) {
+			Assert.Assert(operator.arity == 2, "Expected binary operator");
 			this.operator = operator;
 
 			addChild(0, right);
@@ -1280,6 +1459,13 @@ public class Ast {
 		@Override
 		public Vector<String> code() {
 			Vector<String> instructions = new Vector<String>();
+
+			// An assignment as statement leaves nothing on the stack
+			if(operator.rule == Operator.Rule.ASSIGNMENT
+					|| operator.rule == Operator.Rule.COMPOUND_ASSIGNMENT) {
+				return codeAssignment(false);
+			}
+
 			instructions.addAll(codeR());
 
 			// TODO: generate pop instruction.
@@ -1299,89 +1485,295 @@ public class Ast {
 				Log.fatal("Cant convert type to ptype", line);
 			}
 			
-			boolean math = operator.equals("+") || operator.equals("-") || operator.equals("*") || operator.equals("/");
-			boolean logical = operator.equals("&&") || operator.equals("||");
+			boolean math = operator.rule == Operator.Rule.ARITHMETIC;
 
-			if(operator.equals("=")) {
-				instructions.addAll(getLeftChild().codeL());
-				instructions.addAll(getRightChild().codeR());
+			if(operator.rule == Operator.Rule.LOGICAL) {
+				// Short-circuit: the right side is only evaluated when needed
+				boolean shortValue = operator == Operator.OR;
+				String shortLabel = CodeGenVisitor.getUniqueLabel();
+				String endLabel = CodeGenVisitor.getUniqueLabel();
+
+				instructions.addAll(codeJump(shortLabel, shortValue));
+				instructions.add("ldc i " + (shortValue ? "0" : "1"));
+				instructions.add("ujp " + endLabel);
+				instructions.add(shortLabel + ":");
+				instructions.add("ldc i " + (shortValue ? "1" : "0"));
+				instructions.add(endLabel + ":");
+
+				return instructions;
+			}
+
+			if(operator.rule == Operator.Rule.INTEGER) {
+				return codeInteger();
+			}
+
+			if(operator.rule == Operator.Rule.ASSIGNMENT
+					|| operator.rule == Operator.Rule.COMPOUND_ASSIGNMENT) {
+				return codeAssignment(true);
+			}
+
+			instructions.addAll(getLeftChild().codeR());
+			if(math) {
+				instructions.add("conv " + CodeGenVisitor.typeToPtype(getLeftChild().getType()) + " i");
+			}
+
+			instructions.addAll(getRightChild().codeR());
+			if(math) {
+				instructions.add("conv " + CodeGenVisitor.typeToPtype(getRightChild().getType()) + " i");
+			}
+
+			switch(operator.rule) {
+			case COMPARISON:
+				instructions.add(operator.opcode + " " + childPType);
+				instructions.add("conv b " + pType);
+				break;
+			case ARITHMETIC:
+				instructions.add(operator.opcode + " i");
+				break;
+			default:
+				Log.fatal("Codegen invalid binary operator: " + operator, line);
+			}
+
+			if(math && !(getType() instanceof IntTypeNode)) {
+				instructions.add("conv i " + CodeGenVisitor.typeToPtype(getType()));
+			}
+			
+			return instructions;
+		}
+
+		/**
+		 * The address of the left side is computed once. Compound
+		 * assignments load the old value with a copy of the address.
+		 * 
+		 * @param value
+		 *            whether the assigned value is left on the stack
+		 */
+		private Vector<String> codeAssignment(boolean value) {
+			Vector<String> instructions = new Vector<String>();
+
+			String type = CodeGenVisitor.typeToPtype(getLeftChild().getType());
+			Operator operation = operator.operation;
+
+			instructions.addAll(getLeftChild().codeL());
+
+			Vector<String> compute = null;
+			if(operation == null) {
+				compute = getRightChild().codeR();
+			} else if(operation.rule == Operator.Rule.INTEGER) {
+				Vector<String> load = new Vector<String>();
+				load.add("dpl a");
+				load.add("ind " + type);
+				load.add("conv " + type + " i");
+				compute = codeInline(operation, load, getRightChild());
 			} else {
-				instructions.addAll(getLeftChild().codeR());
-				if(math) {
-					instructions.add("conv " + CodeGenVisitor.typeToPtype(getLeftChild().getType()) + " i");
-				} else if(logical) {
-					instructions.add("conv i b");
-				}
-				
+				compute = new Vector<String>();
+				compute.add("dpl a");
+				compute.add("ind " + type);
+				compute.add("conv " + type + " i");
+				compute.addAll(getRightChild().codeR());
+				compute.add("conv "
+						+ CodeGenVisitor.typeToPtype(getRightChild().getType())
+						+ " i");
+				compute.add(operation.opcode + " i");
+			}
+
+			if(compute == null) {
+				// The routine's frame goes between the address and the old
+				// value, slot 0 of the frame holds the address meanwhile. It's
+				// only written by return after everything is evaluated.
+				instructions.add("dpl a");
+				instructions.add("str a 0 0");
+				instructions.add("mst 0");
+				instructions.add("lod a 0 0");
+				instructions.add("ind " + type);
+				instructions.add("conv " + type + " i");
 				instructions.addAll(getRightChild().codeR());
-				if(math) {
-					instructions.add("conv " + CodeGenVisitor.typeToPtype(getRightChild().getType()) + " i");
-				} else if(logical) {
-					instructions.add("conv i b");
+				instructions.add("cup 2 " + operation.opcode);
+				instructions.add("conv i " + type);
+				if(value) {
+					instructions.add("str " + type + " 0 0");
+					instructions.add("lod " + type + " 0 0");
+					instructions.add("sto " + type);
+					instructions.add("lod " + type + " 0 0");
+				} else {
+					instructions.add("sto " + type);
 				}
+				return instructions;
+			}
+
+			if(value) {
+				instructions.add("dpl a");
+			}
+			instructions.addAll(compute);
+			if(operation != null) {
+				instructions.add("conv i " + type);
+			}
+			instructions.add("sto " + type);
+			if(value) {
+				instructions.add("ind " + type);
+			}
+
+			return instructions;
+		}
+
+		/**
+		 * The P-machine has no instructions for the integer operators. They
+		 * are written out with mul and div when an operand allows it,
+		 * otherwise the routine of the operator is called.
+		 */
+		private Vector<String> codeInteger() {
+			Vector<String> instructions = null;
+
+			ExpressionNode left = getLeftChild();
+			ExpressionNode right = getRightChild();
+			if(operator == Operator.BITWISE_AND
+					&& !isMask(constantValue(right))
+					&& isMask(constantValue(left))) {
+				instructions = codeInline(operator, right.codeR(), left);
+			} else {
+				instructions = codeInline(operator, left.codeR(), right);
 			}
+			if(instructions != null) {
+				return instructions;
+			}
+
+			instructions = new Vector<String>();
+			instructions.add("mst 0");
+			instructions.addAll(left.codeR());
+			instructions.addAll(right.codeR());
+			instructions.add("cup 2 " + operator.opcode);
+
+			return instructions;
+		}
+
+		/**
+		 * Write out an integer operator with mul and div
+		 * 
+		 * @param left
+		 *            code pushing the left operand
+		 * @return null if the right operand doesn't allow it
+		 */
+		private static Vector<String> codeInline(Operator operator,
+				Vector<String> left, ExpressionNode right) {
+			Vector<String> instructions = new Vector<String>();
+			Integer constant = constantValue(right);
 
 			switch(operator) {
-			case "=":
-				instructions.add("sto "
-						+ CodeGenVisitor.typeToPtype(getLeftChild().getType()));
-				// Put assigned value back on stack
-				instructions.addAll(getLeftChild().codeL());
-				instructions.add("ind "
-						+ CodeGenVisitor.typeToPtype(getLeftChild().getType()));
-				break;
-			case "==":
-				instructions.add("equ " + childPType);
-				instructions.add("conv b " + pType);
-				break;
-			case "!=":
-				instructions.add("neq " + childPType);
-				instructions.add("conv b " + pType);
-				break;
-			case ">":
-				instructions.add("grt " + childPType);
-				instructions.add("conv b " + pType);
-				break;
-			case ">=":
-				instructions.add("geq " + childPType);
-				instructions.add("conv b " + pType);
-				break;
-			case "<":
-				instructions.add("les " + childPType);
-				instructions.add("conv b " + pType);
-				break;
-			case "<=":
-				instructions.add("leq " + childPType);
-				instructions.add("conv b " + pType);
-				break;
-			case "+":
-				instructions.add("add i");
+			case SHIFT_LEFT:
+				if(constant != null && constant >= 0 && constant < 31) {
+					instructions.addAll(left);
+					instructions.add("ldc i " + (1 << constant));
+					instructions.add("mul i");
+					return instructions;
+				}
 				break;
-			case "-":
-				instructions.add("sub i");
+			case SHIFT_RIGHT:
+				if(constant != null && constant >= 0 && constant < 31) {
+					instructions.addAll(left);
+					instructions.addAll(BuiltinCode.floorDivide(1 << constant));
+					return instructions;
+				}
 				break;
-			case "/":
-				instructions.add("div i");
+			case REMAINDER:
+				// a - a / b * b, b is evaluated twice
+				if(isSimple(right)) {
+					instructions.addAll(left);
+					instructions.add("dpl i");
+					instructions.addAll(right.codeR());
+					instructions.add("div i");
+					instructions.addAll(right.codeR());
+					instructions.add("mul i");
+					instructions.add("sub i");
+					return instructions;
+				}
 				break;
-			case "*":
-				instructions.add("mul i");
+			case BITWISE_AND:
+				// Masking the low bits: x - floor(x / 2^k) * 2^k
+				if(isMask(constant)) {
+					instructions.addAll(left);
+					instructions.add("dpl i");
+					instructions.addAll(BuiltinCode.floorDivide(constant + 1));
+					instructions.add("ldc i " + (constant + 1));
+					instructions.add("mul i");
+					instructions.add("sub i");
+					return instructions;
+				}
 				break;
-			case "&&":
-				instructions.add("and");
-				instructions.add("conv b i");
+			default:
 				break;
-			case "||":
-				instructions.add("or");
-				instructions.add("conv b i");
+			}
+
+			return null;
+		}
+
+		/**
+		 * @return the value of an int or char constant, null if it isn't one
+		 */
+		private static Integer constantValue(ExpressionNode expression) {
+			if(expression instanceof CharToIntExpressionNode) {
+				expression = (ExpressionNode) expression.children.get(0);
+			}
+
+			if(expression instanceof IntNode) {
+				return ((IntNode) expression).value;
+			} else if(expression instanceof CharNode) {
+				return (int) ((CharNode) expression).value.charValue();
+			}
+
+			return null;
+		}
+
+		/**
+		 * @return whether the value is 2^k - 1, with 0 < k < 31
+		 */
+		private static boolean isMask(Integer value) {
+			return value != null && value > 0 && value < (1 << 30)
+					&& (value & (value + 1)) == 0;
+		}
+
+		/**
+		 * @return whether the expression can be evaluated twice
+		 */
+		private static boolean isSimple(ExpressionNode expression) {
+			if(expression instanceof CharToIntExpressionNode) {
+				expression = (ExpressionNode) expression.children.get(0);
+			}
+
+			return constantValue(expression) != null
+					|| expression instanceof IdNode;
+		}
+
+		@Override
+		public Vector<String> codeJump(String label, boolean value) {
+			Vector<String> instructions = new Vector<String>();
+
+			switch(operator.rule) {
+			case LOGICAL:
+				if((operator == Operator.OR) == value) {
+					// Either side decides the outcome
+					instructions.addAll(getLeftChild().codeJump(label, value));
+					instructions.addAll(getRightChild().codeJump(label, value));
+				} else {
+					// Left side can only decide the opposite outcome
+					String skip = CodeGenVisitor.getUniqueLabel();
+					instructions.addAll(getLeftChild().codeJump(skip, !value));
+					instructions.addAll(getRightChild().codeJump(label, value));
+					instructions.add(skip + ":");
+				}
+				return instructions;
+			case COMPARISON:
 				break;
 			default:
-				Log.fatal("Codegen invalid binary operator: " + operator, line);
+				return super.codeJump(label, value);
 			}
 
-			if(math && !(getType() instanceof IntTypeNode)) {
-				instructions.add("conv i " + CodeGenVisitor.typeToPtype(getType()));
-			}
-			
+			// Compare and jump on the boolean, without converting to int
+			instructions.addAll(getLeftChild().codeR());
+			instructions.addAll(getRightChild().codeR());
+			instructions.add((value ? operator.inverse : operator.opcode) + " "
+					+ CodeGenVisitor.typeToPtype(getLeftChild().getType()));
+			instructions.add("fjp " + label);
+
 			return instructions;
 		}
 
@@ -1410,9 +1802,10 @@ public class Ast {
 	}
 
 	public static class UnaryOperatorNode extends ExpressionNode {
-		public String operator;
+		public Operator operator;
 
-		public UnaryOperatorNode(String operator, ExpressionNode expression) {
+		public UnaryOperatorNode(Operator operator, ExpressionNode expression) {
+			Assert.Assert(operator.arity == 1, "Expected unary operator");
 			this.operator = operator;
 
 			addChild(0, expression);
@@ -1422,10 +1815,31 @@ public class Ast {
 			return (ExpressionNode) children.get(0);
 		}
 
+		@Override
+		public Vector<String> codeJump(String label, boolean value) {
+			if(operator == Operator.NOT) {
+				return getExpression().codeJump(label, !value);
+			}
+
+			return super.codeJump(label, value);
+		}
+
 
 		@Override
 		public Vector<String> code() {
 			Vector<String> instructions = new Vector<String>();
+
+			// As statement only the increment itself is needed
+			if(operator.rule == Operator.Rule.INCREMENT) {
+				String pType = CodeGenVisitor.typeToPtype(getType());
+				instructions.addAll(getExpression().codeL());
+				instructions.add("dpl a");
+				instructions.add("ind " + pType);
+				instructions.add(operator.opcode + " " + pType + " 1");
+				instructions.add("sto " + pType);
+				return instructions;
+			}
+
 			instructions.addAll(codeR());
 
 			// TODO: generate pop instruction.
@@ -1443,33 +1857,38 @@ public class Ast {
 				Log.fatal("Cant convert type to ptype", line);
 			}
 			
-			switch(operator) {
-			case "++":
+			switch(operator.rule) {
+			case INCREMENT:
+				// The address is computed once, the stored value is loaded
+				// again and undone to get the value before the increment
 				instructions.addAll(getExpression().codeL());
-				instructions.addAll(getExpression().codeR());
-				instructions.add("inc " + pType + " 1");
+				instructions.add("dpl a");
+				instructions.add("dpl a");
+				instructions.add("ind " + pType);
+				instructions.add(operator.opcode + " " + pType + " 1");
 				instructions.add("sto " + pType);
-				instructions.addAll(getExpression().codeR());
+				instructions.add("ind " + pType);
+				instructions.add((operator == Operator.INCREMENT ? "dec" : "inc")
+						+ " " + pType + " 1");
 				break;
-			case "--":
-				instructions.addAll(getExpression().codeL());
-				instructions.addAll(getExpression().codeR());
-				instructions.add("dec " + pType + " 1");
-				instructions.add("sto " + pType);
-				instructions.addAll(getExpression().codeR());
-				break;
-			case "!":
+			case NOT:
 				instructions.addAll(getExpression().codeR());
 				instructions.add("conv i b");
-				instructions.add("not");
+				instructions.add(operator.opcode);
 				instructions.add("conv b i");
 				break;
-			case "-":
+			case NEGATE:
 				instructions.addAll(getExpression().codeR());
 				instructions.add("conv " + CodeGenVisitor.typeToPtype(getExpression().getType()) + " i");
-				instructions.add("neg i");
+				instructions.add(operator.opcode + " i");
 				instructions.add("conv i " + CodeGenVisitor.typeToPtype(getExpression().getType()));
 				break;
+			case COMPLEMENT:
+				// ~x is -x - 1 in two's complement
+				instructions.addAll(getExpression().codeR());
+				instructions.add(operator.opcode + " i");
+				instructions.add("dec i 1");
+				break;
 			default:
 				Log.fatal("Codegen invalid unary operator: " + operator, line);
 			}
@@ -1513,6 +1932,29 @@ public class Ast {
             return children.get(3);
         }
 
+        // The children after the body are the loop invariant expressions,
+        // followed by running pointers for subscripts, moved by stride in
+        // every step
+        public int invariants = 0;
+        public int stride = 0;
+
+        /**
+         * Add a declaration that is initialized after the first expression
+         */
+        public void addInvariant(DeclarationNode invariant) {
+            addChild(4 + invariants, invariant);
+            invariants += 1;
+        }
+
+        /**
+         * Add a pointer that is initialized after the invariants and moved by
+         * stride after the step
+         */
+        public void addPointer(DeclarationNode pointer, int stride) {
+            this.stride = stride;
+            addChild(children.size(), pointer);
+        }
+
 		@Override
 		public void visit(Visitor visitor) {
 			visitor.visit(this);
@@ -1525,25 +1967,33 @@ public class Ast {
             if(!(children.get(0) instanceof NothingNode)) {
                 instructions.addAll(children.get(0).code());
             }
+            for(int i = 4; i < children.size(); i++) {
+                instructions.addAll(children.get(i).code());
+            }
 
             //String beginForLabel = CodeGenVisitor.getUniqueLabel();
             //String endForLabel = CodeGenVisitor.getUniqueLabel();
 
             instructions.add(beginForLabel + ":");
-            if(getCondition() instanceof NothingNode) {
-                instructions.add("ldc b t");
-            } else {
-                instructions.addAll(getCondition().codeR());
-                instructions.add("conv " + CodeGenVisitor.typeToPtype(((ExpressionNode)getCondition()).getType()) + " b");
+            instructions.add(CodeGenVisitor.lineMarker(getStartLine()));
+            if(!(getCondition() instanceof NothingNode)) {
+                instructions.addAll(((ExpressionNode)getCondition()).codeJump(endForLabel, false));
             }
-            instructions.add("fjp " + endForLabel);
             instructions.addAll(getBody().code());
 
             instructions.add(continueLabel + ":");
+            instructions.add(CodeGenVisitor.lineMarker(getStartLine()));
 
             if(!(children.get(2) instanceof NothingNode)) {
                 instructions.addAll(children.get(2).code());
             }
+            for(int i = 4 + invariants; i < children.size(); i++) {
+                int offset = ((DeclarationNode) children.get(i)).symbol.offset;
+                instructions.add("lod a 0 " + offset);
+                instructions.add((stride < 0 ? "dec" : "inc") + " a "
+                        + Math.abs(stride));
+                instructions.add("str a 0 " + offset);
+            }
 
             instructions.add("ujp " + beginForLabel);
 
@@ -1562,6 +2012,10 @@ public class Ast {
 	}
 
 	public static class ReturnStatementNode extends StatementNode {
+		// Set by TailCallOptimizer when this returns a call to the function
+		// itself
+		public boolean tailCall = false;
+
 		public ReturnStatementNode(Node expression) {
 			addChild(0, expression);
 		}
@@ -1570,11 +2024,61 @@ public class Ast {
 			return children.get(0);
 		}
 
+		/**
+		 * Reuse the current frame for the recursive call
+		 *
+		 * @return
+		 */
+		private Vector<String> tailCallCode() {
+			Vector<String> instructions = new Vector<String>();
+
+			FunctionCallNode call = (FunctionCallNode) getExpression();
+
+			// All arguments must be evaluated before the parameters are
+			// overwritten
+			for(int i = 0; i < call.children.size(); i++) {
+				if(!isUnchangedParam(call, i)) {
+					instructions.addAll(call.getParamExpression(i).codeR());
+				}
+			}
+			// Parameters are stored right after the frame header
+			for(int i = call.children.size() - 1; i >= 0; i--) {
+				if(!isUnchangedParam(call, i)) {
+					instructions.add("str "
+							+ CodeGenVisitor.typeToPtype(call.symbol.paramTypes
+									.get(i)) + " 0 " + Integer.toString(5 + i));
+				}
+			}
+
+			// The ssp at the label also drops everything left on the stack
+			instructions.add("ujp " + call.symbol.label);
+
+			return instructions;
+		}
+
+		/**
+		 * Check if the argument is the parameter it will be stored in
+		 *
+		 * @param call
+		 * @param i
+		 * @return
+		 */
+		private static boolean isUnchangedParam(FunctionCallNode call, int i) {
+			FormalParameterNode param = (FormalParameterNode) call.owner
+					.getParams().children.get(i);
+			ExpressionNode argument = call.getParamExpression(i);
+
+			return param.symbol != null && argument instanceof IdNode
+					&& ((IdNode) argument).getSymbol() == param.symbol;
+		}
+
 		@Override
 		public Vector<String> code() {
 			Vector<String> instructions = new Vector<String>();
 
-			if(!(getExpression() instanceof NothingNode)) {
+			if(tailCall) {
+				instructions.addAll(tailCallCode());
+			} else if(!(getExpression() instanceof NothingNode)) {
 				instructions.addAll(((ExpressionNode) getExpression()).codeR());
 				instructions.add("str "
 						+ CodeGenVisitor
@@ -1611,6 +2115,14 @@ public class Ast {
 			addChild(0, condition);
 		}
 
+        /**
+         * Add a declaration of a loop invariant expression, it is
+         * initialized before the loop
+         */
+        public void addInvariant(DeclarationNode invariant) {
+            addChild(children.size(), invariant);
+        }
+
         public ExpressionNode getCondition() {
             return (ExpressionNode)children.get(0);
         }
@@ -1631,10 +2143,12 @@ public class Ast {
             //String beginWhileLable = CodeGenVisitor.getUniqueLabel();
             //String endWhileLable = CodeGenVisitor.getUniqueLabel();
 
+            for(int i = 2; i < children.size(); i++) {
+                instructions.addAll(children.get(i).code());
+            }
             instructions.add(beginWhileLabel + ":");
-            instructions.addAll(getCondition().codeR());
-            instructions.add("conv " + CodeGenVisitor.typeToPtype(getCondition().getType()) + " b");
-            instructions.add("fjp " + endWhileLabel);
+            instructions.add(CodeGenVisitor.lineMarker(getStartLine()));
+            instructions.addAll(getCondition().codeJump(endWhileLabel, false));
             instructions.addAll(getBody().code());
             instructions.add("ujp " + beginWhileLabel);
             instructions.add(endWhileLabel + ":");
@@ -1676,14 +2190,10 @@ public class Ast {
 			//String endIfLabel = CodeGenVisitor.getUniqueLabel();
 			//String elseLabel = CodeGenVisitor.getUniqueLabel();
 
-			instructions.addAll(getCondition().codeR());
-			instructions.add("conv "
-                    + CodeGenVisitor.typeToPtype(getCondition().getType())
-					+ " b");
 			if(getElse() instanceof NothingNode) {
-				instructions.add("fjp " + endIfLabel);
+				instructions.addAll(getCondition().codeJump(endIfLabel, false));
 			} else {
-				instructions.add("fjp " + elseLabel);
+				instructions.addAll(getCondition().codeJump(elseLabel, false));
 			}
 			instructions.addAll(getBody().code());
 			instructions.add("ujp " + endIfLabel);
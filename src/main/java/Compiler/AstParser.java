@@ -251,31 +251,11 @@ public class AstParser extends CParser {
 	@Override
 	public void handleChar(String n) {
 		Log.debug("handleChar " + n);
-		
-		n = n.substring(1, n.length() - 1);
-		
-		char c = ' ';
 
-		if(n.charAt(0) == '\\') {
-			switch(n.charAt(1)) {
-			case '\\':
-				c = '\\';
-			break;
-			case 'n':
-				c = '\n';
-			break;
-			case 't':
-				c = '\t';
-			break;
-			case '0':
-				c = '\0';
-			break;
-			}
-		} else {
-			c = n.charAt(0);
-		}
-		
-		CharNode node = new CharNode(c);
+		String value = unescape(n.substring(1, n.length() - 1), _input.LT(-1)
+				.getLine());
+
+		CharNode node = new CharNode(value.charAt(0));
 		insertNode(0, node);
 	}
 
@@ -288,42 +268,107 @@ public class AstParser extends CParser {
 	public void handleString(String n) {
 		Log.debug("handleString " + n);
 
-		StringNode node = new StringNode(n.substring(1, n.length() - 1));
-		
-		String str = "";
-		// handle escape chars
-		boolean escape = false;
-		for(int i = 0; i < node.value.length(); i++) {	
-			if(!escape && node.value.charAt(i) == '\\') {
-				escape = true;
+		StringNode node = new StringNode(unescape(n.substring(1,
+				n.length() - 1), _input.LT(-1).getLine()));
+
+		insertNode(0, node);
+	}
+
+	/**
+	 * Decode the escape sequences of a char or string literal
+	 *
+	 * Supports the C escapes: \a \b \f \n \r \t \v \\ \' \" \?, octal
+	 * escapes of up to three digits and hexadecimal escapes.
+	 *
+	 * @param text
+	 *            : literal without the quotes
+	 * @param line
+	 * @return
+	 */
+	public static String unescape(String text, int line) {
+		int escape = text.indexOf('\\');
+		if(escape < 0) {
+			return text;
+		}
+
+		StringBuilder result = new StringBuilder(text.length());
+		result.append(text, 0, escape);
+		int i = escape;
+		while(i < text.length()) {
+			char c = text.charAt(i);
+			i++;
+			if(c != '\\' || i == text.length()) {
+				result.append(c);
 				continue;
 			}
-			
-			if(escape) {
-				switch(node.value.charAt(i)) {
-				case '\\':
-					str += '\\';
+
+			c = text.charAt(i);
+			i++;
+			switch(c) {
+			case 'a':
+				result.append((char) 7);
+				break;
+			case 'b':
+				result.append('\b');
 				break;
-				case 'n':
-					str += '\n';
+			case 'f':
+				result.append('\f');
 				break;
-				case 't':
-					str += '\t';
+			case 'n':
+				result.append('\n');
 				break;
-				case '0':
-					str += '\0';
+			case 'r':
+				result.append('\r');
+				break;
+			case 't':
+				result.append('\t');
+				break;
+			case 'v':
+				result.append((char) 11);
+				break;
+			case '\\':
+			case '\'':
+			case '"':
+			case '?':
+				result.append(c);
 				break;
+			case 'x':
+				int value = 0;
+				int digits = 0;
+				while(i < text.length()
+						&& Character.digit(text.charAt(i), 16) >= 0) {
+					value = value * 16 + Character.digit(text.charAt(i), 16);
+					if(value > 255) {
+						Log.fatal("Hex escape sequence out of range", line);
+					}
+					i++;
+					digits++;
+				}
+				if(digits == 0) {
+					Log.fatal("\\x used with no following hex digits", line);
+				}
+				result.append((char) value);
+				break;
+			default:
+				if(c >= '0' && c <= '7') {
+					int octal = c - '0';
+					for(int j = 0; j < 2 && i < text.length()
+							&& text.charAt(i) >= '0' && text.charAt(i) <= '7'; j++) {
+						octal = octal * 8 + text.charAt(i) - '0';
+						i++;
+					}
+					if(octal > 255) {
+						Log.fatal("Octal escape sequence out of range", line);
+					}
+					result.append((char) octal);
+				} else {
+					Log.warning("Unknown escape sequence '\\" + c + "'", line);
+					result.append(c);
 				}
-			} else {
-				str += node.value.charAt(i);
 			}
-			
-			escape = false;
 		}
-		
-		node.value = str;
-		
-		insertNode(0, node);
+
+		return result.toString();
 	}
 
 	/**
@@ -390,7 +435,8 @@ public class AstParser extends CParser {
 		Assert.Assert(list.peekFirst() instanceof ExpressionNode);
 		ExpressionNode left = (ExpressionNode) list.removeFirst();
 
-		BinaryOperatorNode node = new BinaryOperatorNode(operator, left, right);
+		BinaryOperatorNode node = new BinaryOperatorNode(
+				Operator.binary(operator), left, right);
 
 		insertNode(0, node);
 	}
@@ -405,8 +451,8 @@ public class AstParser extends CParser {
 		Log.debug("handleUnaryOperator: " + operator);
 
 		Assert.Assert(list.peekFirst() instanceof ExpressionNode);
-		UnaryOperatorNode node = new UnaryOperatorNode(operator,
-				(ExpressionNode) list.removeFirst());
+		UnaryOperatorNode node = new UnaryOperatorNode(
+				Operator.unary(operator), (ExpressionNode) list.removeFirst());
 
 		insertNode(0, node);
 	}
@@ -872,6 +918,9 @@ public class AstParser extends CParser {
 	private void insertNode(int pos, Node node) {
 		node.scope = scope;
 		node.line = getCurrentToken().getLine();
+		node.startLine = _ctx.start.getLine();
+		node.firstToken = _ctx.start.getTokenIndex();
+		node.lastToken = getCurrentToken().getTokenIndex() - 1;
 		list.add(pos, node);
 	}
 
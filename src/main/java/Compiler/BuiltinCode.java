@@ -39,38 +39,215 @@ public class BuiltinCode {
 	}
 	
 	public static Vector<String> generateMod() {
+		return generateRemainder("mod");
+	}
+
+	/**
+	 * a % b as a - a / b * b, div truncates like C
+	 */
+	private static Vector<String> generateRemainder(String label) {
 		Vector<String> instructions = new Vector<String>();
-		
+
+		instructions.add(label + ":");
+		instructions.add("ssp 7");
+		instructions.add("lod i 0 5");
+		instructions.add("lod i 0 5");
+		instructions.add("lod i 0 6");
+		instructions.add("div i");
+		instructions.add("lod i 0 6");
+		instructions.add("mul i");
+		instructions.add("sub i");
+		instructions.add("str i 0 0");
+		instructions.add("retf");
+
+		return instructions;
+	}
+
+	/**
+	 * Divide the int on the stack by a positive divisor, rounding down like
+	 * an arithmetic shift instead of towards zero like div
+	 */
+	public static Vector<String> floorDivide(int divisor) {
+		Vector<String> instructions = new Vector<String>();
+
+		String positive = CodeGenVisitor.getUniqueLabel();
+		String end = CodeGenVisitor.getUniqueLabel();
+
+		// floor(x / d) is (x + 1) / d - 1 for negative x
+		instructions.add("dpl i");
+		instructions.add("ldc i 0");
+		instructions.add("les i");
+		instructions.add("fjp " + positive);
+		instructions.add("inc i 1");
+		instructions.add("ldc i " + divisor);
+		instructions.add("div i");
+		instructions.add("dec i 1");
+		instructions.add("ujp " + end);
+		instructions.add(positive + ":");
+		instructions.add("ldc i " + divisor);
+		instructions.add("div i");
+		instructions.add(end + ":");
+
+		return instructions;
+	}
+
+	/**
+	 * Routine computing an integer operator, called as label(left, right)
+	 */
+	public static Vector<String> generateRoutine(Operator operator) {
+		switch(operator) {
+		case REMAINDER:
+			return generateRemainder(operator.opcode);
+		case SHIFT_LEFT:
+		case SHIFT_RIGHT:
+			return generateShift(operator.opcode, operator == Operator.SHIFT_LEFT);
+		case BITWISE_AND:
+			return generateBitwise(operator.opcode, "and");
+		case BITWISE_OR:
+			return generateBitwise(operator.opcode, "or");
+		case BITWISE_XOR:
+			return generateBitwise(operator.opcode, "neq b");
+		default:
+			Log.fatal("No routine for operator " + operator, -1);
+			return null;
+		}
+	}
+
+	/**
+	 * Shift x by n bits: multiply or floor divide by 2, n times
+	 */
+	private static Vector<String> generateShift(String label, boolean left) {
+		Vector<String> instructions = new Vector<String>();
+
 		String loopStart = CodeGenVisitor.getUniqueLabel();
 		String loopEnd = CodeGenVisitor.getUniqueLabel();
-				
-		instructions.add("mod:");
-		instructions.add("ssp 9");
+
+		instructions.add(label + ":");
+		instructions.add("ssp 7");
 		instructions.add(loopStart + ":");
-		instructions.add("lod i 0 5");
 		instructions.add("lod i 0 6");
-		instructions.add("geq i");
-		instructions.add("conv b i");
-		instructions.add("conv i b");
+		instructions.add("ldc i 0");
+		instructions.add("grt i");
 		instructions.add("fjp " + loopEnd);
-		instructions.add("lda 0 5");
 		instructions.add("lod i 0 5");
-		instructions.add("conv i i");
+		if(left) {
+			instructions.add("ldc i 2");
+			instructions.add("mul i");
+		} else {
+			instructions.addAll(floorDivide(2));
+		}
+		instructions.add("str i 0 5");
 		instructions.add("lod i 0 6");
-		instructions.add("conv i i");
+		instructions.add("dec i 1");
+		instructions.add("str i 0 6");
+		instructions.add("ujp " + loopStart);
+		instructions.add(loopEnd + ":");
+		instructions.add("lod i 0 5");
+		instructions.add("str i 0 0");
+		instructions.add("retf");
+
+		return instructions;
+	}
+
+	/**
+	 * Push whether the int at offset in the frame is 0 or -1, so all its
+	 * remaining bits are the same
+	 */
+	private static void addSignOnly(Vector<String> instructions, int offset) {
+		instructions.add("lod i 0 " + offset);
+		instructions.add("ldc i 0");
+		instructions.add("equ i");
+		instructions.add("lod i 0 " + offset);
+		instructions.add("inc i 1");
+		instructions.add("ldc i 0");
+		instructions.add("equ i");
+		instructions.add("or");
+	}
+
+	/**
+	 * Push whether the lowest bit of the int at offset in the frame is set
+	 */
+	private static void addLowestBit(Vector<String> instructions, int offset) {
+		instructions.add("lod i 0 " + offset);
+		instructions.add("lod i 0 " + offset);
+		instructions.add("ldc i 2");
+		instructions.add("div i");
+		instructions.add("ldc i 2");
+		instructions.add("mul i");
 		instructions.add("sub i");
-		instructions.add("sto i");
-		instructions.add("lda 0 5");
-		instructions.add("ind i");
+		instructions.add("ldc i 0");
+		instructions.add("neq i");
+	}
+
+	/**
+	 * Combine a and b bit by bit, from the lowest bit up until the remaining
+	 * bits of both are all 0 or all 1. The bits are combined by a boolean
+	 * instruction: and, or, or neq for xor.
+	 */
+	private static Vector<String> generateBitwise(String label, String combine) {
+		Vector<String> instructions = new Vector<String>();
+
+		String loopStart = CodeGenVisitor.getUniqueLabel();
+		String loopEnd = CodeGenVisitor.getUniqueLabel();
+		String skip = CodeGenVisitor.getUniqueLabel();
+		String end = CodeGenVisitor.getUniqueLabel();
+
+		// a in 5, b in 6, result in 7, value of the current bit in 8
+		instructions.add(label + ":");
+		instructions.add("ssp 9");
+		instructions.add("ldc i 0");
+		instructions.add("str i 0 7");
+		instructions.add("ldc i 1");
+		instructions.add("str i 0 8");
+
+		instructions.add(loopStart + ":");
+		addSignOnly(instructions, 5);
+		addSignOnly(instructions, 6);
+		instructions.add("and");
+		instructions.add("not");
+		instructions.add("fjp " + loopEnd);
+		addLowestBit(instructions, 5);
+		addLowestBit(instructions, 6);
+		instructions.add(combine);
+		instructions.add("fjp " + skip);
+		instructions.add("lod i 0 7");
+		instructions.add("lod i 0 8");
+		instructions.add("add i");
+		instructions.add("str i 0 7");
+		instructions.add(skip + ":");
+		for(int offset = 5; offset <= 6; offset++) {
+			instructions.add("lod i 0 " + offset);
+			instructions.addAll(floorDivide(2));
+			instructions.add("str i 0 " + offset);
+		}
+		instructions.add("lod i 0 8");
+		instructions.add("ldc i 2");
+		instructions.add("mul i");
+		instructions.add("str i 0 8");
 		instructions.add("ujp " + loopStart);
+
+		// All remaining bits set is -bit in two's complement
 		instructions.add(loopEnd + ":");
 		instructions.add("lod i 0 5");
+		instructions.add("ldc i 0");
+		instructions.add("neq i");
+		instructions.add("lod i 0 6");
+		instructions.add("ldc i 0");
+		instructions.add("neq i");
+		instructions.add(combine);
+		instructions.add("fjp " + end);
+		instructions.add("lod i 0 7");
+		instructions.add("lod i 0 8");
+		instructions.add("sub i");
+		instructions.add("str i 0 7");
+		instructions.add(end + ":");
+		instructions.add("lod i 0 7");
 		instructions.add("str i 0 0");
 		instructions.add("retf");
-		
+
 		return instructions;
 	}
-	
+
 	public static Vector<String> generateStrlen() {
 		Vector<String> instructions = new Vector<String>();
 		
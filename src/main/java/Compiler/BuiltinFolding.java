@@ -0,0 +1,192 @@
+package Compiler;
+
+import java.util.Vector;
+
+/**
+ * @brief Evaluates calls to pure builtins with literal arguments
+ *
+ *        strlen, atoi, chartoint, isdigit, pow and mod called with int, char
+ *        or string literals are replaced by the int they return. The result
+ *        is computed the way the routine in BuiltinCode computes it, so
+ *        strlen counts the terminator, pow with a negative exponent returns
+ *        the base and ints wrap around. mod by zero is left to the routine,
+ *        which stops the program.
+ */
+public class BuiltinFolding extends Visitor {
+
+	public static boolean report = false;
+
+	public Vector<String> folded = new Vector<String>();
+
+	@Override
+	public void visit(Ast.FileNode node) {
+		visitChildren(node);
+
+		if(report) {
+			for(int i = 0; i < folded.size(); i++) {
+				System.err.println("[FOLD] " + folded.get(i));
+			}
+			System.err.println("[FOLD] " + folded.size()
+					+ " call(s) evaluated");
+		}
+	}
+
+	@Override
+	public void visit(Ast.FunctionDeclarationNode node) {
+		// forward declaration
+		if(node.children.get(2) == null) {
+			return;
+		}
+
+		visitChildren(node);
+	}
+
+	@Override
+	public void visit(Ast.FunctionCallNode node) {
+		visitChildren(node);
+
+		// A call as statement only matters for its side effects
+		if(!node.symbol.builtin || node.parent instanceof Ast.ExprStatementNode) {
+			return;
+		}
+
+		Object[] arguments = new Object[node.children.size()];
+		for(int i = 0; i < arguments.length; i++) {
+			arguments[i] = literal(node.getParamExpression(i));
+			if(arguments[i] == null) {
+				return;
+			}
+		}
+
+		Integer value = evaluate(node.id, arguments);
+		if(value == null) {
+			return;
+		}
+
+		Ast.IntNode constant = new Ast.IntNode(value);
+		constant.line = node.line;
+		constant.scope = node.scope;
+		node.parent.replaceNode(node, constant);
+		constant.parent = node.parent;
+
+		folded.add("line " + node.line + ": '" + node.id
+				+ "' evaluated to " + value);
+	}
+
+	/**
+	 * @return the Integer or String value of a literal, null for other
+	 *         expressions
+	 */
+	private static Object literal(Ast.ExpressionNode expression) {
+		if(expression instanceof Ast.IntNode) {
+			return ((Ast.IntNode) expression).value;
+		}
+		if(expression instanceof Ast.CharNode) {
+			return (int) ((Ast.CharNode) expression).value.charValue();
+		}
+		if(expression instanceof Ast.StringNode) {
+			return ((Ast.StringNode) expression).value;
+		}
+
+		// Negative numbers are parsed as a negated literal
+		if(expression instanceof Ast.UnaryOperatorNode
+				&& ((Ast.UnaryOperatorNode) expression).operator == Operator.NEGATE
+				&& ((Ast.UnaryOperatorNode) expression).getExpression() instanceof Ast.IntNode) {
+			return -((Ast.IntNode) ((Ast.UnaryOperatorNode) expression)
+					.getExpression()).value;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Compute the result of a builtin
+	 *
+	 * @return null if the builtin can't be evaluated for these arguments
+	 */
+	private static Integer evaluate(String id, Object[] arguments) {
+		if(id.equals("strlen") && arguments[0] instanceof String) {
+			return strlen((String) arguments[0]);
+		}
+		if(id.equals("atoi") && arguments[0] instanceof String) {
+			return atoi((String) arguments[0]);
+		}
+		if(id.equals("chartoint") && arguments[0] instanceof Integer) {
+			return (Integer) arguments[0] - '0';
+		}
+		if(id.equals("isdigit") && arguments[0] instanceof Integer) {
+			int c = (Integer) arguments[0];
+			return c >= '0' && c <= '9' ? 1 : 0;
+		}
+		if(id.equals("pow") && arguments[0] instanceof Integer
+				&& arguments[1] instanceof Integer) {
+			return pow((Integer) arguments[0], (Integer) arguments[1]);
+		}
+		if(id.equals("mod") && arguments[0] instanceof Integer
+				&& arguments[1] instanceof Integer && (Integer) arguments[1] != 0) {
+			int a = (Integer) arguments[0];
+			int b = (Integer) arguments[1];
+			return a - a / b * b;
+		}
+
+		return null;
+	}
+
+	/**
+	 * The routine also counts the terminator
+	 */
+	private static int strlen(String s) {
+		int length = s.indexOf('\0');
+		if(length == -1) {
+			length = s.length();
+		}
+
+		return length + 1;
+	}
+
+	/**
+	 * Optional '-', then digits up to the first other character
+	 */
+	private static int atoi(String s) {
+		int sign = 1;
+		int i = 0;
+		if(s.length() > 0 && s.charAt(0) == '-') {
+			sign = -1;
+			i = 1;
+		}
+
+		int value = 0;
+		for(; i < s.length() && s.charAt(i) != '\0'; i++) {
+			char c = s.charAt(i);
+			if(c < '0' || c > '9') {
+				break;
+			}
+			value = value * 10 + c - '0';
+		}
+
+		return sign * value;
+	}
+
+	/**
+	 * The routine multiplies the base exponent - 1 times, done by squaring
+	 */
+	private static int pow(int base, int exponent) {
+		if(exponent == 0) {
+			return 1;
+		}
+		if(exponent < 0) {
+			return base;
+		}
+
+		int result = base;
+		int factor = base;
+		for(int n = exponent - 1; n > 0; n >>= 1) {
+			if((n & 1) == 1) {
+				result *= factor;
+			}
+			factor *= factor;
+		}
+
+		return result;
+	}
+}
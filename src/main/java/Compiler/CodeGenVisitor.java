@@ -1,19 +1,130 @@
 package Compiler;
 
+import java.io.PrintStream;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Vector;
 
 public class CodeGenVisitor extends Visitor {
 	private Vector<String> instructions = new Vector<String>();
+	private Vector<Integer> lines = new Vector<Integer>();
+	private Map<String, String> functionNames = null;
+	private Ast.FileNode file;
+	private PrintStream out;
 
 	private static int labelCounter = 0;
 
-	public static String getUniqueLabel() {
+	public CodeGenVisitor() {
+		this(System.out);
+	}
+
+	/**
+	 * @param out
+	 *            : stream the instructions are written to
+	 */
+	public CodeGenVisitor(PrintStream out) {
+		this.out = out;
+	}
+
+	public static synchronized String getUniqueLabel() {
 		String label = "L" + Integer.toString(labelCounter);
 		labelCounter += 1;
 
 		return label;
 	}
 
+	/**
+	 * Pseudo instruction marking the start of the code of a source line
+	 *
+	 * The markers are removed before the instructions are written.
+	 *
+	 * @param line
+	 * @return
+	 */
+	public static String lineMarker(int line) {
+		return ".line " + Integer.toString(line);
+	}
+
+	public static boolean isLineMarker(String instruction) {
+		return instruction.startsWith(".line ");
+	}
+
+	/**
+	 * Pseudo instruction pushing constants, like an ldc for every value
+	 *
+	 * A P-machine that knows it copies all values at once, for the others it
+	 * is written as ldc instructions unless bulk data is enabled.
+	 *
+	 * @param type
+	 *            : P-machine type of the values
+	 * @param values
+	 * @return
+	 */
+	public static String data(String type, Vector<Integer> values) {
+		StringBuilder instruction = new StringBuilder(".data " + type);
+		for(int i = 0; i < values.size(); i++) {
+			instruction.append(' ').append(values.get(i));
+		}
+
+		return instruction.toString();
+	}
+
+	public static boolean isData(String instruction) {
+		return instruction.startsWith(".data ");
+	}
+
+	/**
+	 * Merge constants pushed one after the other into a data instruction
+	 *
+	 * @param instructions
+	 * @return the data instruction, the instructions themselves if they aren't
+	 *         all ldc instructions of the same type
+	 */
+	public static Vector<String> data(Vector<String> instructions) {
+		if(instructions.size() < 2) {
+			return instructions;
+		}
+
+		String type = null;
+		Vector<Integer> values = new Vector<Integer>(instructions.size());
+		for(int i = 0; i < instructions.size(); i++) {
+			String[] parts = instructions.get(i).split(" ");
+			if(parts.length != 3 || !parts[0].equals("ldc")
+					|| (type != null && !parts[1].equals(type))
+					|| !parts[2].matches("-?[0-9]+")) {
+				return instructions;
+			}
+			type = parts[1];
+			values.add(Integer.parseInt(parts[2]));
+		}
+
+		Vector<String> result = new Vector<String>();
+		result.add(data(type, values));
+		return result;
+	}
+
+	/**
+	 * Write the data instructions as ldc instructions
+	 */
+	private void expandData() {
+		Vector<String> result = new Vector<String>(instructions.size());
+
+		for(int i = 0; i < instructions.size(); i++) {
+			String instruction = instructions.get(i);
+			if(!isData(instruction)) {
+				result.add(instruction);
+				continue;
+			}
+
+			String[] parts = instruction.split(" ");
+			for(int j = 2; j < parts.length; j++) {
+				result.add("ldc " + parts[1] + " " + parts[j]);
+			}
+		}
+
+		instructions = result;
+	}
+
 	public static String typeToPtype(Ast.TypeNode t) {
 		if(t instanceof Ast.IntTypeNode) {
 			return "i";
@@ -37,12 +148,97 @@ public class CodeGenVisitor extends Visitor {
 		return "";
 	}
 
+	public Vector<String> getInstructions() {
+		return instructions;
+	}
+
+	/**
+	 * Get the source line of every instruction, 0 when it doesn't belong to a
+	 * line
+	 *
+	 * @return
+	 */
+	public Vector<Integer> getLines() {
+		return lines;
+	}
+
+	/**
+	 * Get the source line and function of the instructions
+	 *
+	 * @return
+	 */
+	public LineMap getLineMap() {
+		if(functionNames == null) {
+			functionNames = new HashMap<String, String>();
+			findFunctionNames(file);
+		}
+
+		return new LineMap(instructions, lines, functionNames);
+	}
+
+	/**
+	 * Remember the source name of every function label
+	 *
+	 * @param node
+	 */
+	private void findFunctionNames(Ast.Node node) {
+		if(node instanceof Ast.FunctionDeclarationNode) {
+			Ast.FunctionDeclarationNode function = (Ast.FunctionDeclarationNode) node;
+			if(function.symbol != null) {
+				functionNames.put(function.symbol.label, function.id);
+			}
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			if(node.children.get(i) != null) {
+				findFunctionNames(node.children.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Replace the line markers by the line of every instruction
+	 */
+	private void removeLineMarkers() {
+		Vector<String> result = new Vector<String>(instructions.size());
+		lines = new Vector<Integer>(instructions.size());
+		int line = 0;
+
+		for(int i = 0; i < instructions.size(); i++) {
+			if(isLineMarker(instructions.get(i))) {
+				line = Integer.parseInt(instructions.get(i).substring(
+						".line ".length()));
+			} else {
+				result.add(instructions.get(i));
+				lines.add(line);
+			}
+		}
+
+		instructions = result;
+
+		// A label belongs to the line of the instruction after it
+		for(int i = lines.size() - 2; i >= 0; i--) {
+			if(ControlFlowGraph.isLabel(instructions.get(i))) {
+				lines.set(i, lines.get(i + 1));
+			}
+		}
+	}
+
 	@Override
 	public void visit(Ast.FileNode node) {
 		instructions.addAll(node.code());
 
+		if(!App.bulkData) {
+			expandData();
+		}
+		if(App.jumpThreading) {
+			instructions = new JumpThreading().optimize(instructions);
+		}
+		removeLineMarkers();
+		file = node;
+
 		for(int i = 0; i < instructions.size(); i++) {
-			System.out.println(instructions.get(i));
+			out.println(instructions.get(i));
 		}
 	}
 
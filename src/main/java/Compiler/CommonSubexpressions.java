@@ -0,0 +1,512 @@
+package Compiler;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+import Compiler.SymbolTableVisitor.Symbol;
+import Compiler.SymbolTableVisitor.VarSymbol;
+
+/**
+ * @brief Computes repeated expressions of a basic block once
+ *
+ *        The expressions of the statements in a block up to the next control
+ *        statement are numbered in the order they are evaluated: equal
+ *        expressions get the same number until a variable they read is
+ *        assigned, or memory they read may be changed. When the same number
+ *        is used often enough, its first use is stored in a temporary, a
+ *        declaration in the frame of the function like those of the Inliner,
+ *        and the other uses load it.
+ *
+ *        Only operators, casts, subscripts, dereferences and calls to the
+ *        pure builtins are numbered, and not in the right side of && and ||,
+ *        which doesn't always run. Comparisons are left alone, in a condition
+ *        they jump without computing a value.
+ */
+public class CommonSubexpressions extends Visitor {
+
+	public static boolean report = false;
+
+	public Vector<String> eliminated = new Vector<String>();
+
+	private int tempCounter = 0;
+
+	// Function of the block, set per basic block
+	private Ast.FunctionDeclarationNode function;
+
+	// Numbers of the expressions that are still available
+	private Map<String, Value> available;
+	private Vector<Value> values;
+	private IdentityHashMap<Object, Integer> ids;
+
+	/**
+	 * @brief Equal expressions that compute the same value
+	 */
+	private static class Value {
+		public Vector<Ast.ExpressionNode> uses = new Vector<Ast.ExpressionNode>();
+		public Set<Symbol> reads = new HashSet<Symbol>();
+		public boolean memory = false; // reads through a pointer or subscript
+		public int cost;
+	}
+
+	@Override
+	public void visit(Ast.FileNode node) {
+		visitChildren(node);
+
+		if(report) {
+			for(int i = 0; i < eliminated.size(); i++) {
+				System.err.println("[CSE] " + eliminated.get(i));
+			}
+			System.err.println("[CSE] " + eliminated.size()
+					+ " expression(s) computed once");
+		}
+	}
+
+	@Override
+	public void visit(Ast.FunctionDeclarationNode node) {
+		// forward declaration
+		if(node.children.get(2) == null) {
+			return;
+		}
+
+		visitChildren(node);
+	}
+
+	@Override
+	public void visit(Ast.BlockStatementNode node) {
+		Vector<Ast.Node> block = new Vector<Ast.Node>();
+
+		for(int i = 0; i < node.children.size(); i++) {
+			Ast.Node statement = node.children.get(i);
+
+			if(statement instanceof Ast.ExprStatementNode) {
+				block.add(statement.children.get(0));
+			} else if(statement instanceof Ast.DeclarationNode) {
+				block.add(statement);
+			} else if(statement instanceof Ast.ReturnStatementNode) {
+				// The expression ends the block
+				Ast.Node expression = ((Ast.ReturnStatementNode) statement)
+						.getExpression();
+				if(expression instanceof Ast.ExpressionNode) {
+					block.add(expression);
+				}
+				number(node, block);
+			} else if(statement instanceof Ast.IfStatementNode) {
+				block.add(((Ast.IfStatementNode) statement).getCondition());
+				number(node, block);
+				visitChildren(statement);
+			} else {
+				number(node, block);
+				statement.visit(this);
+			}
+		}
+
+		number(node, block);
+	}
+
+	@Override
+	public void visit(Ast.ForStatementNode node) {
+		for(int i = 0; i < 3; i++) {
+			numberExpression(node, node.children.get(i));
+		}
+
+		visitChildren(node);
+	}
+
+	@Override
+	public void visit(Ast.WhileStatementNode node) {
+		numberExpression(node, node.getCondition());
+
+		visitChildren(node);
+	}
+
+	@Override
+	public void visit(Ast.IfStatementNode node) {
+		// An if in a block has its condition numbered with the block
+		numberExpression(node, node.getCondition());
+
+		visitChildren(node);
+	}
+
+	@Override
+	public void visit(Ast.ExprStatementNode node) {
+		numberExpression(node, node.children.get(0));
+	}
+
+	@Override
+	public void visit(Ast.ReturnStatementNode node) {
+		numberExpression(node, node.getExpression());
+	}
+
+	private void numberExpression(Ast.Node node, Ast.Node expression) {
+		if(expression instanceof Ast.ExpressionNode) {
+			Vector<Ast.Node> block = new Vector<Ast.Node>();
+			block.add(expression);
+			number(node, block);
+		}
+	}
+
+	/**
+	 * Number the expressions of a basic block and replace the repeated ones
+	 *
+	 * @param block
+	 *            : the expressions in the order they run, emptied afterwards
+	 */
+	private void number(Ast.Node node, Vector<Ast.Node> block) {
+		function = Passes.enclosingFunction(node);
+		if(block.isEmpty() || function == null) {
+			block.clear();
+			return;
+		}
+
+		available = new HashMap<String, Value>();
+		values = new Vector<Value>();
+		ids = new IdentityHashMap<Object, Integer>();
+		for(int i = 0; i < block.size(); i++) {
+			walk(block.get(i), false);
+		}
+		block.clear();
+
+		// Larger expressions first, their other uses drop the uses inside
+		Collections.sort(values, new Comparator<Value>() {
+			@Override
+			public int compare(Value a, Value b) {
+				return b.cost - a.cost;
+			}
+		});
+
+		Set<Ast.Node> removed = Collections
+				.newSetFromMap(new IdentityHashMap<Ast.Node, Boolean>());
+		for(int i = 0; i < values.size(); i++) {
+			Value value = values.get(i);
+			Vector<Ast.ExpressionNode> uses = new Vector<Ast.ExpressionNode>();
+			for(int u = 0; u < value.uses.size(); u++) {
+				if(!removed.contains(value.uses.get(u))) {
+					uses.add(value.uses.get(u));
+				}
+			}
+
+			// Storing and loading the first use costs two instructions
+			if((uses.size() - 1) * (value.cost - 1) <= 2) {
+				continue;
+			}
+
+			for(int u = 1; u < uses.size(); u++) {
+				remove(uses.get(u), removed);
+			}
+			replace(uses);
+		}
+
+		available = null;
+		values = null;
+		ids = null;
+	}
+
+	private static void remove(Ast.Node node, Set<Ast.Node> removed) {
+		removed.add(node);
+		for(int i = 0; i < node.children.size(); i++) {
+			remove(node.children.get(i), removed);
+		}
+	}
+
+	/**
+	 * Number the subtree in the order the code evaluates it
+	 *
+	 * @param conditional
+	 *            whether the subtree doesn't always run
+	 * @return whether the subtree can be part of a numbered expression
+	 */
+	private boolean walk(Ast.Node node, boolean conditional) {
+		if(node == null || node instanceof Ast.FunctionDeclarationNode
+				|| node instanceof Ast.InitializerListNode) {
+			return false;
+		}
+
+		if(node instanceof Ast.LiteralNode) {
+			return true;
+		}
+		if(node instanceof Ast.IdNode) {
+			return ((Ast.IdNode) node).getSymbol() instanceof VarSymbol;
+		}
+
+		if(node instanceof Ast.BinaryOperatorNode) {
+			Ast.BinaryOperatorNode binary = (Ast.BinaryOperatorNode) node;
+			switch(binary.operator.rule) {
+			case ASSIGNMENT:
+			case COMPOUND_ASSIGNMENT:
+				walkAddress(binary.getLeftChild(), conditional);
+				walk(binary.getRightChild(), conditional);
+				kill(binary.getLeftChild());
+				return false;
+			case LOGICAL:
+				walk(binary.getLeftChild(), conditional);
+				walk(binary.getRightChild(), true);
+				return false;
+			case COMPARISON:
+				// Part of a larger expression, but never numbered itself
+				return walk(binary.getLeftChild(), conditional)
+						& walk(binary.getRightChild(), conditional);
+			default:
+				break;
+			}
+		} else if(node instanceof Ast.UnaryOperatorNode) {
+			Ast.UnaryOperatorNode unary = (Ast.UnaryOperatorNode) node;
+			if(unary.operator.rule == Operator.Rule.INCREMENT) {
+				walkAddress(unary.getExpression(), conditional);
+				kill(unary.getExpression());
+				return false;
+			}
+		} else if(node instanceof Ast.DeclarationNode) {
+			walk(((Ast.DeclarationNode) node).getInitializer(), conditional);
+			killSymbol(((Ast.DeclarationNode) node).symbol);
+			return false;
+		} else if(node instanceof Ast.FunctionCallNode) {
+			Ast.FunctionCallNode call = (Ast.FunctionCallNode) node;
+			boolean pure = true;
+			for(int i = 0; i < call.children.size(); i++) {
+				pure &= walk(call.getParamExpression(i), conditional);
+			}
+			if(!Passes.isReadOnly(call)) {
+				killMemory(call.symbol.declaration != null
+						&& call.symbol.declaration.owner != null);
+			}
+			if(!pure || !Passes.isPure(call)) {
+				return false;
+			}
+			record(call, conditional);
+			return true;
+		} else if(node instanceof Ast.ReferenceExpressionNode
+				|| node instanceof Ast.ArrayToPointerExpressionNode) {
+			Ast.Node target = node.children.get(0);
+			walkAddress(target, conditional);
+			return target instanceof Ast.IdNode;
+		} else if(!(node instanceof Ast.CastExpressionNode
+				|| node instanceof Ast.SubscriptExpressionNode || node instanceof Ast.DereferenceExpressionNode)) {
+			// Statements and inlined calls
+			for(int i = 0; i < node.children.size(); i++) {
+				walk(node.children.get(i), conditional);
+			}
+			return false;
+		}
+
+		boolean pure = true;
+		for(int i = 0; i < node.children.size(); i++) {
+			if(node instanceof Ast.SubscriptExpressionNode && i == 0) {
+				walkAddress(node.children.get(0), conditional);
+				pure &= node.children.get(0) instanceof Ast.IdNode;
+			} else {
+				pure &= walk(node.children.get(i), conditional);
+			}
+		}
+
+		if(pure) {
+			record((Ast.ExpressionNode) node, conditional);
+		}
+
+		return pure;
+	}
+
+	/**
+	 * Number the expressions computing the address of an lvalue
+	 */
+	private void walkAddress(Ast.Node node, boolean conditional) {
+		if(node instanceof Ast.SubscriptExpressionNode) {
+			walkAddress(node.children.get(0), conditional);
+			walk(node.children.get(1), conditional);
+		} else if(node instanceof Ast.DereferenceExpressionNode) {
+			walk(node.children.get(0), conditional);
+		} else if(!(node instanceof Ast.IdNode)) {
+			walk(node, conditional);
+		}
+	}
+
+	/**
+	 * Add a use of the expression to its value
+	 */
+	private void record(Ast.ExpressionNode node, boolean conditional) {
+		if(conditional || !Passes.isValue(node)
+				|| !Passes.isScalar(node.getType())) {
+			return;
+		}
+
+		String key = key(node);
+		Value value = available.get(key);
+		if(value == null) {
+			value = new Value();
+			value.cost = cost(node);
+			reads(node, value);
+			available.put(key, value);
+			values.add(value);
+		}
+
+		value.uses.add(node);
+	}
+
+	/**
+	 * Build a string that is equal for expressions computing the same value
+	 */
+	private String key(Ast.Node node) {
+		String key = node.getClass().getSimpleName();
+
+		if(node instanceof Ast.IdNode) {
+			key += " " + id(((Ast.IdNode) node).getSymbol());
+		} else if(node instanceof Ast.IntNode) {
+			key += " " + ((Ast.IntNode) node).value;
+		} else if(node instanceof Ast.CharNode) {
+			key += " " + (int) ((Ast.CharNode) node).value;
+		} else if(node instanceof Ast.StringNode) {
+			key += " " + id(node);
+		} else if(node instanceof Ast.BinaryOperatorNode) {
+			key += " " + ((Ast.BinaryOperatorNode) node).operator.name();
+		} else if(node instanceof Ast.UnaryOperatorNode) {
+			key += " " + ((Ast.UnaryOperatorNode) node).operator.name();
+		} else if(node instanceof Ast.FunctionCallNode) {
+			key += " " + ((Ast.FunctionCallNode) node).id;
+		}
+
+		key += "(";
+		for(int i = 0; i < node.children.size(); i++) {
+			key += key(node.children.get(i)) + ",";
+		}
+
+		return key + ")";
+	}
+
+	private int id(Object object) {
+		Integer id = ids.get(object);
+		if(id == null) {
+			id = ids.size();
+			ids.put(object, id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Collect the variables and memory the expression reads
+	 */
+	private static void reads(Ast.Node node, Value value) {
+		if(node instanceof Ast.IdNode) {
+			value.reads.add(((Ast.IdNode) node).getSymbol());
+		} else if(node instanceof Ast.SubscriptExpressionNode
+				|| node instanceof Ast.DereferenceExpressionNode
+				|| node instanceof Ast.FunctionCallNode) {
+			value.memory = true;
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			reads(node.children.get(i), value);
+		}
+	}
+
+	/**
+	 * Estimate the number of instructions computing the expression
+	 */
+	private static int cost(Ast.Node node) {
+		int cost = 0;
+		for(int i = 0; i < node.children.size(); i++) {
+			cost += cost(node.children.get(i));
+		}
+
+		if(node instanceof Ast.IdNode || node instanceof Ast.LiteralNode
+				|| node instanceof Ast.ReferenceExpressionNode) {
+			return 1;
+		} else if(node instanceof Ast.SubscriptExpressionNode) {
+			// conv a i; add i; conv i a; ind
+			return cost + 4;
+		} else if(node instanceof Ast.BinaryOperatorNode) {
+			// Both operands are converted to int
+			return cost + 3;
+		} else if(node instanceof Ast.UnaryOperatorNode) {
+			return cost + 3;
+		} else if(node instanceof Ast.FunctionCallNode) {
+			// The builtins loop or compare
+			return cost + 10;
+		} else if(node instanceof Ast.ArrayToPointerExpressionNode
+				|| node instanceof Ast.PointerToPointerExpressionNode
+				|| node instanceof Ast.ParamNode) {
+			return cost;
+		}
+
+		return cost + 1;
+	}
+
+	/**
+	 * The lvalue is assigned, its values are no longer available
+	 */
+	private void kill(Ast.Node target) {
+		if(target instanceof Ast.IdNode) {
+			killSymbol(((Ast.IdNode) target).getSymbol());
+		} else {
+			killMemory(false);
+		}
+	}
+
+	private void killSymbol(Symbol symbol) {
+		Iterator<Value> it = available.values().iterator();
+		while(it.hasNext()) {
+			if(it.next().reads.contains(symbol)) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Memory may have changed: values reading it or variables that aren't
+	 * private to the function are no longer available
+	 *
+	 * @param all
+	 *            whether the locals of the function may have changed as well
+	 */
+	private void killMemory(boolean all) {
+		Iterator<Value> it = available.values().iterator();
+		while(it.hasNext()) {
+			Value value = it.next();
+			boolean killed = all || value.memory;
+			for(Iterator<Symbol> s = value.reads.iterator(); s.hasNext()
+					&& !killed;) {
+				Symbol symbol = s.next();
+				killed = !(symbol.type instanceof Ast.StaticArrayTypeNode)
+						&& (!Passes.isLocal((VarSymbol) symbol, function) || Passes
+							.addressTaken(function.getBlock(), symbol));
+			}
+			if(killed) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Store the first use in a temporary and load it in the others
+	 */
+	private void replace(Vector<Ast.ExpressionNode> uses) {
+		Ast.ExpressionNode first = uses.get(0);
+		Ast.Node parent = first.parent;
+
+		Ast.DeclarationNode temp = Passes.temporary("common" + tempCounter,
+				first.getType(), first, function, first);
+		tempCounter += 1;
+
+		parent.replaceNode(first, temp);
+		temp.parent = parent;
+
+		for(int u = 1; u < uses.size(); u++) {
+			Ast.ExpressionNode use = uses.get(u);
+
+			Ast.IdNode id = Passes.use((VarSymbol) temp.symbol, function,
+					use.line);
+			use.parent.replaceNode(use, id);
+			id.parent = use.parent;
+		}
+
+		eliminated.add("line " + first.line + ": " + uses.size()
+				+ " use(s) of an expression share a temporary in '"
+				+ function.id + "'");
+	}
+}
@@ -0,0 +1,228 @@
+package Compiler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * @brief Directory with the output of earlier compilations
+ *
+ *        An entry is stored under the hash of the compiler, the options and
+ *        the source, and holds everything the compiler wrote and its exit
+ *        status. Reading an entry marks it as used, when the directory grows
+ *        larger than the maximum size the entries that were used longest ago
+ *        are removed.
+ */
+public class CompileCache {
+
+	public static class Entry {
+		public int status = 0;
+		public byte[] out = new byte[0];
+		public byte[] err = new byte[0];
+	}
+
+	private static final String SUFFIX = ".entry";
+
+	private static String compiler = null;
+
+	private File directory;
+	private long maxSize;
+
+	/**
+	 * @param directory
+	 *            : created if it doesn't exist
+	 * @param maxSize
+	 *            : maximum size of all entries in bytes
+	 */
+	public CompileCache(String directory, long maxSize) {
+		this.directory = new File(directory);
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Identify the compiler by the size and modification time of its classes
+	 *
+	 * @return
+	 */
+	static synchronized String compiler() {
+		if(compiler != null) {
+			return compiler;
+		}
+
+		try {
+			Path location = new File(App.class.getProtectionDomain()
+					.getCodeSource().getLocation().toURI()).toPath();
+			final long[] sum = new long[] { 0, 0 };
+			Files.walkFileTree(location, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file,
+						BasicFileAttributes attributes) {
+					sum[0] += attributes.size();
+					sum[1] = Math.max(sum[1], attributes.lastModifiedTime()
+							.toMillis());
+					return FileVisitResult.CONTINUE;
+				}
+			});
+			compiler = location + " " + sum[0] + " " + sum[1];
+		} catch(Exception e) {
+			// Never reuse output when the compiler is unknown
+			compiler = "unknown " + System.nanoTime();
+		}
+
+		return compiler;
+	}
+
+	/**
+	 * Get the key of a compilation
+	 *
+	 * @param source
+	 * @param options
+	 *            : command line options, the cache options are ignored
+	 * @return
+	 */
+	public static String key(byte[] source, String[] options) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(compiler().getBytes(StandardCharsets.UTF_8));
+			for(int i = 0; i < options.length; i++) {
+				if(!options[i].startsWith("-fcache")) {
+					digest.update((byte) 0);
+					digest.update(options[i].getBytes(StandardCharsets.UTF_8));
+				}
+			}
+			digest.update((byte) 0);
+			digest.update(source);
+
+			byte[] hash = digest.digest();
+			StringBuilder hex = new StringBuilder();
+			for(int i = 0; i < hash.length; i++) {
+				hex.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+				hex.append(Character.forDigit(hash[i] & 0xf, 16));
+			}
+			return hex.toString();
+		} catch(NoSuchAlgorithmException e) {
+			// Every Java platform has SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return the entry, null if there is none
+	 */
+	public Entry get(String key) {
+		File file = new File(directory, key + SUFFIX);
+
+		try(DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(file)))) {
+			Entry entry = new Entry();
+			entry.status = in.readInt();
+			entry.out = new byte[in.readInt()];
+			in.readFully(entry.out);
+			entry.err = new byte[in.readInt()];
+			in.readFully(entry.err);
+
+			file.setLastModified(System.currentTimeMillis());
+			return entry;
+		} catch(IOException e) {
+			// Missing or broken entries are compiled again
+			return null;
+		}
+	}
+
+	/**
+	 * Store an entry and remove old entries if the cache is too large
+	 *
+	 * @param key
+	 * @param entry
+	 * @throws IOException
+	 */
+	public void put(String key, Entry entry) throws IOException {
+		Files.createDirectories(directory.toPath());
+
+		// Other compilers can read the cache at the same time, so the entry
+		// only appears when it is complete
+		File temporary = File.createTempFile("entry", ".tmp", directory);
+		try {
+			try(DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(temporary)))) {
+				out.writeInt(entry.status);
+				out.writeInt(entry.out.length);
+				out.write(entry.out);
+				out.writeInt(entry.err.length);
+				out.write(entry.err);
+			}
+			Files.move(temporary.toPath(), new File(directory, key + SUFFIX)
+					.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temporary.delete();
+		}
+
+		evict();
+	}
+
+	/**
+	 * Remove the least recently used entries until the cache fits
+	 */
+	private void evict() {
+		File[] files = directory.listFiles();
+		if(files == null) {
+			return;
+		}
+
+		long size = 0;
+		int count = 0;
+		final long[] used = new long[files.length];
+		File[] entries = new File[files.length];
+		for(int i = 0; i < files.length; i++) {
+			if(files[i].getName().endsWith(SUFFIX)) {
+				entries[count] = files[i];
+				count += 1;
+				size += files[i].length();
+			}
+		}
+		if(size <= maxSize) {
+			return;
+		}
+
+		entries = Arrays.copyOf(entries, count);
+		for(int i = 0; i < count; i++) {
+			used[i] = entries[i].lastModified();
+		}
+		Integer[] order = new Integer[count];
+		for(int i = 0; i < count; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(used[a], used[b]);
+			}
+		});
+
+		for(int i = 0; i < count && size > maxSize; i++) {
+			File file = entries[order[i]];
+			long length = file.length();
+			if(file.delete()) {
+				size -= length;
+			}
+		}
+	}
+}
@@ -0,0 +1,485 @@
+package Compiler;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * @brief Control flow graph of generated P-code
+ *
+ *        Splits the instructions in basic blocks and connects them with the
+ *        jumps between them. Calls (cup) don't end a block, the graph of a
+ *        function starts at the label it is called with. The program itself
+ *        starts at the first block.
+ *
+ *        For every block the immediate dominator and the innermost natural
+ *        loop containing it are computed.
+ */
+public class ControlFlowGraph {
+
+	/**
+	 * @brief Sequence of instructions without jumps in or out of the middle
+	 */
+	public static class BasicBlock {
+		public int id;
+		public Vector<String> labels = new Vector<String>();
+		public Vector<String> instructions = new Vector<String>();
+
+		public Vector<BasicBlock> successors = new Vector<BasicBlock>();
+		public Vector<BasicBlock> predecessors = new Vector<BasicBlock>();
+
+		// Start of the program or of a function
+		public boolean entry = false;
+		public boolean reachable = false;
+
+		// Immediate dominator, null for entries and unreachable blocks
+		public BasicBlock dominator = null;
+
+		// Innermost loop containing this block
+		public Loop loop = null;
+
+		public String getLastInstruction() {
+			if(instructions.size() == 0) {
+				return null;
+			}
+
+			return instructions.lastElement();
+		}
+
+		public int getLoopDepth() {
+			if(loop == null) {
+				return 0;
+			}
+
+			return loop.depth;
+		}
+	}
+
+	/**
+	 * @brief Natural loop
+	 */
+	public static class Loop {
+		public BasicBlock header;
+		public Vector<BasicBlock> blocks = new Vector<BasicBlock>();
+
+		// Innermost loop containing this loop
+		public Loop parent = null;
+		public int depth = 1;
+
+		public boolean contains(BasicBlock block) {
+			return blocks.contains(block);
+		}
+	}
+
+	public Vector<BasicBlock> blocks = new Vector<BasicBlock>();
+	public Vector<BasicBlock> entries = new Vector<BasicBlock>();
+	public Vector<Loop> loops = new Vector<Loop>();
+
+	private Map<String, BasicBlock> labels = new HashMap<String, BasicBlock>();
+
+	public ControlFlowGraph(Vector<String> instructions) {
+		buildBlocks(instructions);
+		buildEdges();
+		computeDominators();
+		findLoops();
+	}
+
+	/**
+	 * Check if the instruction is a label
+	 *
+	 * @param instruction
+	 * @return
+	 */
+	public static boolean isLabel(String instruction) {
+		return instruction.endsWith(":");
+	}
+
+	/**
+	 * Get the name of a label
+	 *
+	 * @param instruction
+	 *            : label
+	 * @return
+	 */
+	public static String getLabel(String instruction) {
+		return instruction.substring(0, instruction.length() - 1);
+	}
+
+	/**
+	 * Get the opcode of an instruction
+	 *
+	 * @param instruction
+	 * @return
+	 */
+	public static String getOpcode(String instruction) {
+		int space = instruction.indexOf(' ');
+		if(space == -1) {
+			return instruction;
+		}
+
+		return instruction.substring(0, space);
+	}
+
+	/**
+	 * Get the label an instruction jumps to or calls
+	 *
+	 * @param instruction
+	 * @return label, null if the instruction doesn't have one
+	 */
+	public static String getTarget(String instruction) {
+		String opcode = getOpcode(instruction);
+		if(opcode.equals("ujp") || opcode.equals("fjp")
+				|| opcode.equals("cup")) {
+			return instruction.substring(instruction.lastIndexOf(' ') + 1);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Check if execution never continues with the next instruction
+	 *
+	 * @param instruction
+	 * @return
+	 */
+	public static boolean isUnconditional(String instruction) {
+		String opcode = getOpcode(instruction);
+		return opcode.equals("ujp") || opcode.equals("retf")
+				|| opcode.equals("retp") || opcode.equals("hlt");
+	}
+
+	/**
+	 * Check if the instruction ends a basic block
+	 *
+	 * @param instruction
+	 * @return
+	 */
+	public static boolean endsBlock(String instruction) {
+		return isUnconditional(instruction)
+				|| getOpcode(instruction).equals("fjp");
+	}
+
+	/**
+	 * Get the block starting with the label
+	 *
+	 * @param label
+	 * @return block, null if the label doesn't exist
+	 */
+	public BasicBlock getBlock(String label) {
+		return labels.get(label);
+	}
+
+	/**
+	 * Check if every path from an entry to b goes through a
+	 *
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public boolean dominates(BasicBlock a, BasicBlock b) {
+		if(!b.reachable) {
+			return false;
+		}
+
+		while(b != null) {
+			if(a == b) {
+				return true;
+			}
+			b = b.dominator;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Convert the graph back to instructions
+	 *
+	 * @return
+	 */
+	public Vector<String> toInstructions() {
+		Vector<String> instructions = new Vector<String>();
+
+		for(int i = 0; i < blocks.size(); i++) {
+			for(int l = 0; l < blocks.get(i).labels.size(); l++) {
+				instructions.add(blocks.get(i).labels.get(l) + ":");
+			}
+			instructions.addAll(blocks.get(i).instructions);
+		}
+
+		return instructions;
+	}
+
+	private BasicBlock newBlock() {
+		BasicBlock block = new BasicBlock();
+		block.id = blocks.size();
+		blocks.add(block);
+
+		return block;
+	}
+
+	private void buildBlocks(Vector<String> instructions) {
+		BasicBlock current = newBlock();
+
+		for(int i = 0; i < instructions.size(); i++) {
+			String instruction = instructions.get(i);
+
+			if(isLabel(instruction)) {
+				// Consecutive labels belong to the same block
+				if(current.instructions.size() > 0) {
+					current = newBlock();
+				}
+				current.labels.add(getLabel(instruction));
+				labels.put(getLabel(instruction), current);
+				continue;
+			}
+
+			current.instructions.add(instruction);
+			if(endsBlock(instruction) && i + 1 < instructions.size()) {
+				current = newBlock();
+			}
+		}
+	}
+
+	private void addEdge(BasicBlock from, BasicBlock to) {
+		if(to == null || from.successors.contains(to)) {
+			return;
+		}
+
+		from.successors.add(to);
+		to.predecessors.add(from);
+	}
+
+	private void buildEdges() {
+		blocks.get(0).entry = true;
+
+		for(int i = 0; i < blocks.size(); i++) {
+			BasicBlock block = blocks.get(i);
+			BasicBlock next = i + 1 < blocks.size() ? blocks.get(i + 1) : null;
+
+			for(int j = 0; j < block.instructions.size(); j++) {
+				String instruction = block.instructions.get(j);
+				if(getOpcode(instruction).equals("cup")
+						&& labels.containsKey(getTarget(instruction))) {
+					labels.get(getTarget(instruction)).entry = true;
+				}
+			}
+
+			String last = block.getLastInstruction();
+			if(last == null) {
+				addEdge(block, next);
+				continue;
+			}
+
+			String target = getTarget(last);
+			if(getOpcode(last).equals("ujp")) {
+				addEdge(block, labels.get(target));
+			} else if(getOpcode(last).equals("fjp")) {
+				addEdge(block, labels.get(target));
+				addEdge(block, next);
+			} else if(!isUnconditional(last)) {
+				addEdge(block, next);
+			}
+		}
+
+		for(int i = 0; i < blocks.size(); i++) {
+			if(blocks.get(i).entry) {
+				entries.add(blocks.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Get the reachable blocks in reverse postorder
+	 *
+	 * @return
+	 */
+	private Vector<BasicBlock> reversePostorder() {
+		Vector<BasicBlock> order = new Vector<BasicBlock>();
+		boolean[] visited = new boolean[blocks.size()];
+
+		// Iterative depth first search, programs can have many blocks
+		for(int e = 0; e < entries.size(); e++) {
+			if(visited[entries.get(e).id]) {
+				continue;
+			}
+
+			Vector<BasicBlock> stack = new Vector<BasicBlock>();
+			Vector<Integer> next = new Vector<Integer>();
+			stack.add(entries.get(e));
+			next.add(0);
+			visited[entries.get(e).id] = true;
+
+			while(stack.size() > 0) {
+				BasicBlock block = stack.lastElement();
+				int s = next.lastElement();
+
+				if(s < block.successors.size()) {
+					next.set(next.size() - 1, s + 1);
+					BasicBlock successor = block.successors.get(s);
+					if(!visited[successor.id]) {
+						visited[successor.id] = true;
+						stack.add(successor);
+						next.add(0);
+					}
+				} else {
+					order.add(block);
+					stack.remove(stack.size() - 1);
+					next.remove(next.size() - 1);
+				}
+			}
+		}
+
+		Collections.reverse(order);
+		return order;
+	}
+
+	/**
+	 * Compute immediate dominators (Cooper, Harvey and Kennedy)
+	 */
+	private void computeDominators() {
+		Vector<BasicBlock> order = reversePostorder();
+
+		// Position in the order, 0 is a virtual root above all entries
+		int[] number = new int[blocks.size()];
+		for(int i = 0; i < order.size(); i++) {
+			number[order.get(i).id] = i + 1;
+			order.get(i).reachable = true;
+		}
+
+		int[] dominator = new int[order.size() + 1];
+		for(int i = 1; i < dominator.length; i++) {
+			dominator[i] = -1;
+		}
+		for(int i = 0; i < entries.size(); i++) {
+			dominator[number[entries.get(i).id]] = 0;
+		}
+
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+
+			for(int i = 0; i < order.size(); i++) {
+				BasicBlock block = order.get(i);
+				if(block.entry) {
+					continue;
+				}
+
+				int newDominator = -1;
+				for(int p = 0; p < block.predecessors.size(); p++) {
+					BasicBlock predecessor = block.predecessors.get(p);
+					if(!predecessor.reachable
+							|| dominator[number[predecessor.id]] == -1) {
+						continue;
+					}
+
+					if(newDominator == -1) {
+						newDominator = number[predecessor.id];
+					} else {
+						newDominator = intersect(dominator,
+								number[predecessor.id], newDominator);
+					}
+				}
+
+				if(dominator[i + 1] != newDominator) {
+					dominator[i + 1] = newDominator;
+					changed = true;
+				}
+			}
+		}
+
+		for(int i = 0; i < order.size(); i++) {
+			if(dominator[i + 1] > 0) {
+				order.get(i).dominator = order.get(dominator[i + 1] - 1);
+			}
+		}
+	}
+
+	private static int intersect(int[] dominator, int a, int b) {
+		while(a != b) {
+			while(a > b) {
+				a = dominator[a];
+			}
+			while(b > a) {
+				b = dominator[b];
+			}
+		}
+
+		return a;
+	}
+
+	/**
+	 * Find the natural loops of the back edges and how they are nested
+	 */
+	private void findLoops() {
+		Map<BasicBlock, Loop> headers = new HashMap<BasicBlock, Loop>();
+
+		for(int i = 0; i < blocks.size(); i++) {
+			BasicBlock block = blocks.get(i);
+			for(int s = 0; s < block.successors.size(); s++) {
+				BasicBlock header = block.successors.get(s);
+				if(!dominates(header, block)) {
+					continue;
+				}
+
+				Loop loop = headers.get(header);
+				if(loop == null) {
+					loop = new Loop();
+					loop.header = header;
+					loop.blocks.add(header);
+					headers.put(header, loop);
+					loops.add(loop);
+				}
+
+				// Everything that reaches the back edge without passing the
+				// header
+				Vector<BasicBlock> work = new Vector<BasicBlock>();
+				work.add(block);
+				while(work.size() > 0) {
+					BasicBlock b = work.remove(work.size() - 1);
+					if(loop.blocks.contains(b)) {
+						continue;
+					}
+					loop.blocks.add(b);
+					for(int p = 0; p < b.predecessors.size(); p++) {
+						if(b.predecessors.get(p).reachable) {
+							work.add(b.predecessors.get(p));
+						}
+					}
+				}
+			}
+		}
+
+		// The innermost loop is the smallest loop containing the block
+		for(int i = 0; i < loops.size(); i++) {
+			Loop loop = loops.get(i);
+			for(int j = 0; j < loops.size(); j++) {
+				Loop other = loops.get(j);
+				if(other == loop || !other.contains(loop.header)
+						|| other.blocks.size() <= loop.blocks.size()) {
+					continue;
+				}
+				if(loop.parent == null
+						|| other.blocks.size() < loop.parent.blocks.size()) {
+					loop.parent = other;
+				}
+			}
+
+			for(int b = 0; b < loop.blocks.size(); b++) {
+				BasicBlock block = loop.blocks.get(b);
+				if(block.loop == null
+						|| loop.blocks.size() < block.loop.blocks.size()) {
+					block.loop = loop;
+				}
+			}
+		}
+
+		for(int i = 0; i < loops.size(); i++) {
+			Loop parent = loops.get(i).parent;
+			while(parent != null) {
+				loops.get(i).depth += 1;
+				parent = parent.parent;
+			}
+		}
+	}
+}
@@ -0,0 +1,550 @@
+package Compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenStream;
+
+import Compiler.SymbolTableVisitor.FuncSymbol;
+import Compiler.SymbolTableVisitor.Symbol;
+import Compiler.SymbolTableVisitor.VarSymbol;
+
+/**
+ * @brief Reuses the generated code of unchanged top-level declarations
+ *
+ *        A function or global declaration is identified by a hash of its
+ *        tokens, the types of the globals it uses and the signatures of the
+ *        functions it calls. The code is stored with placeholders for
+ *        everything that depends on the rest of the file: labels, offsets of
+ *        globals, addresses of string literals and source lines. When the code
+ *        is reused the placeholders are filled in again, so adding or changing
+ *        other declarations only regenerates those declarations.
+ *
+ *        Only the declarations of the last compilation are kept. A saved cache
+ *        is stamped with the compiler that wrote it and ignored by any other,
+ *        whose code generation may differ.
+ */
+public class FunctionCache implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// Offsets given to globals while generating code, to find them back
+	private static final int SENTINEL = 1000000000;
+
+	private static class Entry implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		String[] code;
+		int[] placeholders; // instructions with a placeholder
+	}
+
+	private HashMap<String, Entry> entries = new HashMap<String, Entry>();
+
+	// Identity of the compiler that generated the entries
+	String compiler = CompileCache.compiler();
+
+	private transient HashMap<String, Entry> previous = new HashMap<String, Entry>();
+	private transient TokenStream tokens;
+	private transient Map<String, Ast.FunctionDeclarationNode> bodies;
+
+	public transient int hits = 0;
+	public transient int misses = 0;
+
+	/**
+	 * Start compiling a file
+	 *
+	 * @param tokens
+	 *            : tokens of the file
+	 */
+	public void start(TokenStream tokens) {
+		this.tokens = tokens;
+		bodies = null;
+		hits = 0;
+		misses = 0;
+
+		previous = entries;
+		entries = new HashMap<String, Entry>();
+	}
+
+	/**
+	 * Get the code of a top-level declaration, from the cache if possible
+	 *
+	 * The offsets of the globals must be assigned.
+	 *
+	 * @param file
+	 * @param declaration
+	 * @return
+	 */
+	public Vector<String> code(Ast.FileNode file, Ast.Node declaration) {
+		if(!cacheable(declaration)) {
+			return declaration.code();
+		}
+
+		Vector<Ast.FunctionDeclarationNode> functions = new Vector<Ast.FunctionDeclarationNode>();
+		Vector<Ast.FunctionCallNode> calls = new Vector<Ast.FunctionCallNode>();
+		Vector<Ast.InlinedCallNode> inlined = new Vector<Ast.InlinedCallNode>();
+		Vector<Ast.StringNode> strings = new Vector<Ast.StringNode>();
+		Vector<Ast.IdNode> ids = new Vector<Ast.IdNode>();
+		collect(declaration, functions, calls, inlined, strings, ids);
+
+		Vector<VarSymbol> globals = globals(declaration, ids);
+		String key = key(file, declaration, calls, inlined, globals);
+
+		Entry cached = previous.get(key);
+		if(cached == null) {
+			cached = entries.get(key);
+		}
+		if(cached != null) {
+			hits += 1;
+			entries.put(key, cached);
+			return link(cached, declaration, functions, calls, strings,
+					globals);
+		}
+
+		misses += 1;
+		Entry normalized = normalize(generate(declaration, globals),
+				declaration, functions, calls, strings, globals);
+		if(normalized == null) {
+			return declaration.code();
+		}
+		entries.put(key, normalized);
+
+		return link(normalized, declaration, functions, calls, strings,
+				globals);
+	}
+
+	private boolean cacheable(Ast.Node declaration) {
+		if(tokens == null || declaration.firstToken < 0
+				|| declaration.lastToken < declaration.firstToken) {
+			return false;
+		}
+
+		if(declaration instanceof Ast.FunctionDeclarationNode) {
+			Ast.FunctionDeclarationNode function = (Ast.FunctionDeclarationNode) declaration;
+			return function.symbol != null && !function.symbol.builtin
+					&& function.getBlock() != null;
+		}
+
+		return declaration instanceof Ast.DeclarationNode;
+	}
+
+	/**
+	 * Find the functions, calls, inlined calls, strings and identifiers in
+	 * preorder
+	 */
+	private static void collect(Ast.Node node,
+			Vector<Ast.FunctionDeclarationNode> functions,
+			Vector<Ast.FunctionCallNode> calls,
+			Vector<Ast.InlinedCallNode> inlined, Vector<Ast.StringNode> strings,
+			Vector<Ast.IdNode> ids) {
+		if(node instanceof Ast.FunctionDeclarationNode) {
+			functions.add((Ast.FunctionDeclarationNode) node);
+		} else if(node instanceof Ast.FunctionCallNode) {
+			calls.add((Ast.FunctionCallNode) node);
+		} else if(node instanceof Ast.InlinedCallNode) {
+			inlined.add((Ast.InlinedCallNode) node);
+		} else if(node instanceof Ast.StringNode) {
+			strings.add((Ast.StringNode) node);
+		} else if(node instanceof Ast.IdNode) {
+			ids.add((Ast.IdNode) node);
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			if(node.children.get(i) != null) {
+				collect(node.children.get(i), functions, calls, inlined,
+						strings, ids);
+			}
+		}
+	}
+
+	/**
+	 * Get the tokens of a declaration, with the line breaks between them
+	 */
+	private String text(Ast.Node declaration) {
+		StringBuilder text = new StringBuilder();
+		int line = tokens.get(declaration.firstToken).getLine();
+
+		for(int i = declaration.firstToken; i <= declaration.lastToken; i++) {
+			Token token = tokens.get(i);
+			for(; line < token.getLine(); line++) {
+				text.append('\n');
+			}
+			text.append(token.getText());
+			text.append(' ');
+		}
+
+		return text.toString();
+	}
+
+	/**
+	 * Get the globals used by the declaration, except the declaration itself
+	 */
+	private static Vector<VarSymbol> globals(Ast.Node declaration,
+			Vector<Ast.IdNode> ids) {
+		Vector<VarSymbol> globals = new Vector<VarSymbol>();
+
+		for(int i = 0; i < ids.size(); i++) {
+			Symbol symbol = ids.get(i).getSymbol();
+			if(symbol instanceof VarSymbol
+					&& ((VarSymbol) symbol).declaration != null
+					&& ((VarSymbol) symbol).declaration.function == null
+					&& ((VarSymbol) symbol).declaration != declaration
+					&& !globals.contains(symbol)) {
+				globals.add((VarSymbol) symbol);
+			}
+		}
+
+		return globals;
+	}
+
+	/**
+	 * Generate the code with the globals at offsets that can't be mistaken
+	 * for anything else
+	 */
+	private static Vector<String> generate(Ast.Node declaration,
+			Vector<VarSymbol> globals) {
+		int[] offsets = new int[globals.size()];
+		for(int g = 0; g < globals.size(); g++) {
+			offsets[g] = globals.get(g).offset;
+			globals.get(g).offset = SENTINEL + g;
+		}
+
+		try {
+			return declaration.code();
+		} finally {
+			for(int g = 0; g < globals.size(); g++) {
+				globals.get(g).offset = offsets[g];
+			}
+		}
+	}
+
+	private static boolean hasOffset(String instruction) {
+		String opcode = ControlFlowGraph.getOpcode(instruction);
+		return opcode.equals("lod") || opcode.equals("lda")
+				|| opcode.equals("str");
+	}
+
+	private static boolean contains(Ast.Node ancestor, Ast.Node node) {
+		for(; node != null; node = node.parent) {
+			if(node == ancestor) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static String signature(FuncSymbol symbol) {
+		String result = symbol.id + " " + symbol.builtin + " "
+				+ symbol.variadic + " "
+				+ symbol.returnType.getStringRepresentation();
+		for(int i = 0; i < symbol.paramTypes.size(); i++) {
+			result += ", " + symbol.paramTypes.get(i).getStringRepresentation();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get the function with a body of every label, the inliner copies those
+	 */
+	private Map<String, Ast.FunctionDeclarationNode> bodies(Ast.FileNode file) {
+		if(bodies == null) {
+			bodies = new HashMap<String, Ast.FunctionDeclarationNode>();
+			for(int i = 0; i < file.children.size(); i++) {
+				if(file.children.get(i) instanceof Ast.FunctionDeclarationNode) {
+					Ast.FunctionDeclarationNode function = (Ast.FunctionDeclarationNode) file.children
+							.get(i);
+					if(function.symbol != null && function.getBlock() != null) {
+						bodies.put(function.symbol.label, function);
+					}
+				}
+			}
+		}
+
+		return bodies;
+	}
+
+	private String key(Ast.FileNode file, Ast.Node declaration,
+			Vector<Ast.FunctionCallNode> calls,
+			Vector<Ast.InlinedCallNode> inlined, Vector<VarSymbol> globals) {
+		StringBuilder key = new StringBuilder();
+		key.append(App.inline + " " + App.tailCalls + " " + Inliner.maxSize
+				+ " " + App.strengthReduction + " " + App.loopInvariantMotion
+				+ " " + App.commonSubexpressions + " " + App.foldBuiltins
+				+ "\n");
+		key.append(text(declaration));
+
+		if(declaration instanceof Ast.DeclarationNode) {
+			key.append("\noffset "
+					+ ((Ast.DeclarationNode) declaration).symbol.offset);
+		}
+
+		for(int i = 0; i < globals.size(); i++) {
+			key.append("\nglobal " + globals.get(i).id + " "
+					+ globals.get(i).type.getStringRepresentation());
+		}
+
+		for(int i = 0; i < calls.size(); i++) {
+			FuncSymbol symbol = calls.get(i).symbol;
+			if(symbol.declaration != null
+					&& contains(declaration, symbol.declaration)) {
+				continue;
+			}
+
+			key.append("\ncall " + signature(symbol));
+			Ast.FunctionDeclarationNode body = bodies(file).get(symbol.label);
+			if(App.inline && body != null && body.firstToken >= 0) {
+				key.append("\n" + text(body));
+			}
+		}
+
+		// The Inliner already replaced these calls by a copy of the callee
+		for(int i = 0; i < inlined.size(); i++) {
+			FuncSymbol symbol = inlined.get(i).symbol;
+			key.append("\ninlined " + signature(symbol));
+			Ast.FunctionDeclarationNode body = bodies(file).get(symbol.label);
+			if(body != null && body.firstToken >= 0) {
+				key.append("\n" + text(body));
+			}
+		}
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(key.toString().getBytes(
+					StandardCharsets.UTF_8));
+
+			StringBuilder hex = new StringBuilder();
+			for(int i = 0; i < hash.length; i++) {
+				hex.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+				hex.append(Character.forDigit(hash[i] & 0xf, 16));
+			}
+			return hex.toString();
+		} catch(NoSuchAlgorithmException e) {
+			// Every Java platform has SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static boolean hasTarget(String instruction) {
+		String opcode = ControlFlowGraph.getOpcode(instruction);
+		return opcode.equals("ujp") || opcode.equals("fjp")
+				|| opcode.equals("cup");
+	}
+
+	private static String replaceTarget(String instruction, String target) {
+		return instruction.substring(0, instruction.lastIndexOf(' ') + 1)
+				+ target;
+	}
+
+	/**
+	 * Replace the labels, string addresses and lines by placeholders
+	 *
+	 * Defined labels become #f (the nth function in the declaration) or #l (a
+	 * new label), called functions outside of the declaration #c (the nth
+	 * call), offsets of globals #g (the nth global), string addresses #s (the
+	 * nth string) and lines are relative to the start of the declaration.
+	 *
+	 * @return normalized code, null if the code can't be normalized
+	 */
+	private static Entry normalize(Vector<String> instructions,
+			Ast.Node declaration,
+			Vector<Ast.FunctionDeclarationNode> functions,
+			Vector<Ast.FunctionCallNode> calls, Vector<Ast.StringNode> strings,
+			Vector<VarSymbol> globals) {
+		Map<String, String> labels = new HashMap<String, String>();
+		for(int i = 0; i < instructions.size(); i++) {
+			if(!ControlFlowGraph.isLabel(instructions.get(i))) {
+				continue;
+			}
+
+			String label = ControlFlowGraph.getLabel(instructions.get(i));
+			String placeholder = "#l" + labels.size();
+			for(int f = 0; f < functions.size(); f++) {
+				if(functions.get(f).symbol != null
+						&& label.equals(functions.get(f).symbol.label)) {
+					placeholder = "#f" + f;
+				}
+			}
+			labels.put(label, placeholder);
+		}
+		for(int c = calls.size() - 1; c >= 0; c--) {
+			if(!labels.containsKey(calls.get(c).symbol.label)
+					|| labels.get(calls.get(c).symbol.label).startsWith("#c")) {
+				labels.put(calls.get(c).symbol.label, "#c" + c);
+			}
+		}
+
+		Entry entry = new Entry();
+		entry.code = new String[instructions.size()];
+		Vector<Integer> placeholders = new Vector<Integer>();
+		for(int i = 0; i < instructions.size(); i++) {
+			String instruction = instructions.get(i);
+			String normalized = instruction;
+
+			if(ControlFlowGraph.isLabel(instruction)) {
+				normalized = labels.get(ControlFlowGraph.getLabel(instruction))
+						+ ":";
+			} else if(hasTarget(instruction)) {
+				String target = labels.get(ControlFlowGraph
+						.getTarget(instruction));
+				if(target != null) {
+					normalized = replaceTarget(instruction, target);
+				} else if(Operator.routine(ControlFlowGraph
+						.getTarget(instruction)) == null) {
+					// Operator routines keep their label
+					return null;
+				}
+			} else if(instruction.startsWith("ldc a ")) {
+				int position = Integer.parseInt(instruction.substring("ldc a "
+						.length()));
+				int s = 0;
+				while(s < strings.size()
+						&& strings.get(s).stringPosition != position) {
+					s++;
+				}
+				if(s == strings.size()) {
+					return null;
+				}
+				normalized = "ldc a #s" + s;
+			} else if(hasOffset(instruction)) {
+				int offset = Integer.parseInt(instruction.substring(instruction
+						.lastIndexOf(' ') + 1));
+				if(offset >= SENTINEL && offset < SENTINEL + globals.size()) {
+					normalized = replaceTarget(instruction, "#g"
+							+ (offset - SENTINEL));
+				}
+			} else if(CodeGenVisitor.isLineMarker(instruction)) {
+				int line = Integer.parseInt(instruction.substring(".line "
+						.length()));
+				normalized = CodeGenVisitor.lineMarker(line
+						- declaration.getStartLine());
+			}
+
+			entry.code[i] = normalized;
+			if(!normalized.equals(instruction)
+					|| CodeGenVisitor.isLineMarker(instruction)) {
+				placeholders.add(i);
+			}
+		}
+
+		entry.placeholders = new int[placeholders.size()];
+		for(int i = 0; i < placeholders.size(); i++) {
+			entry.placeholders[i] = placeholders.get(i);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Fill in the placeholders of normalized code
+	 */
+	private static Vector<String> link(Entry entry, Ast.Node declaration,
+			Vector<Ast.FunctionDeclarationNode> functions,
+			Vector<Ast.FunctionCallNode> calls, Vector<Ast.StringNode> strings,
+			Vector<VarSymbol> globals) {
+		Map<String, String> labels = new HashMap<String, String>();
+		Vector<String> result = new Vector<String>(Arrays.asList(entry.code));
+
+		for(int p = 0; p < entry.placeholders.length; p++) {
+			int i = entry.placeholders[p];
+			String instruction = entry.code[i];
+
+			if(ControlFlowGraph.isLabel(instruction)) {
+				instruction = label(ControlFlowGraph.getLabel(instruction),
+						labels, functions, calls) + ":";
+			} else if(hasTarget(instruction)) {
+				instruction = replaceTarget(instruction, label(
+						ControlFlowGraph.getTarget(instruction), labels,
+						functions, calls));
+			} else if(instruction.startsWith("ldc a #s")) {
+				int s = Integer.parseInt(instruction.substring("ldc a #s"
+						.length()));
+				instruction = "ldc a "
+						+ Integer.toString(strings.get(s).stringPosition);
+			} else if(hasOffset(instruction)) {
+				int g = Integer.parseInt(instruction.substring(instruction
+						.lastIndexOf(" #g") + 3));
+				instruction = replaceTarget(instruction,
+						Integer.toString(globals.get(g).offset));
+			} else if(CodeGenVisitor.isLineMarker(instruction)) {
+				int line = Integer.parseInt(instruction.substring(".line "
+						.length()));
+				instruction = CodeGenVisitor.lineMarker(line
+						+ declaration.getStartLine());
+			}
+
+			result.set(i, instruction);
+		}
+
+		return result;
+	}
+
+	private static String label(String placeholder, Map<String, String> labels,
+			Vector<Ast.FunctionDeclarationNode> functions,
+			Vector<Ast.FunctionCallNode> calls) {
+		int n = Integer.parseInt(placeholder.substring(2));
+		if(placeholder.startsWith("#f")) {
+			return functions.get(n).symbol.label;
+		} else if(placeholder.startsWith("#c")) {
+			return calls.get(n).symbol.label;
+		}
+
+		// Labels inside the declaration must be unique in the program
+		if(!labels.containsKey(placeholder)) {
+			labels.put(placeholder, CodeGenVisitor.getUniqueLabel());
+		}
+		return labels.get(placeholder);
+	}
+
+	/**
+	 * Read a cache written by save
+	 *
+	 * @param path
+	 * @return the cache, empty if the file doesn't exist, can't be read or
+	 *         was written by another compiler
+	 */
+	public static FunctionCache load(String path) {
+		if(!new File(path).exists()) {
+			return new FunctionCache();
+		}
+
+		try(ObjectInputStream in = new ObjectInputStream(new FileInputStream(
+				path))) {
+			FunctionCache cache = (FunctionCache) in.readObject();
+			if(!CompileCache.compiler().equals(cache.compiler)) {
+				return new FunctionCache();
+			}
+			cache.previous = new HashMap<String, Entry>();
+			return cache;
+		} catch(IOException | ClassNotFoundException | ClassCastException e) {
+			return new FunctionCache();
+		}
+	}
+
+	/**
+	 * Write the declarations of the last compilation to a file
+	 *
+	 * @param path
+	 * @throws IOException
+	 */
+	public void save(String path) throws IOException {
+		try(ObjectOutputStream out = new ObjectOutputStream(
+				new FileOutputStream(path))) {
+			out.writeObject(this);
+		}
+	}
+}
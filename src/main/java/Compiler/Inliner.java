@@ -0,0 +1,247 @@
+package Compiler;
+
+import java.util.Vector;
+
+import Compiler.SymbolTableVisitor.Symbol;
+import Compiler.SymbolTableVisitor.VarSymbol;
+
+/**
+ * @brief Inlines calls to small leaf functions
+ *
+ *        A call is inlined when the callee is a top level function whose body
+ *        is a single return statement with an expression of at most maxSize
+ *        nodes that doesn't call any other function. The builtins isdigit and
+ *        chartoint are inlined as well.
+ *
+ *        The arguments are stored in temporaries in the frame of the caller,
+ *        so every argument is still evaluated exactly once.
+ */
+public class Inliner extends Visitor {
+
+	public static int maxSize = 32;
+	public static boolean report = false;
+
+	public Vector<String> inlinedCalls = new Vector<String>();
+
+	private int tempCounter = 0;
+
+	@Override
+	public void visit(Ast.FileNode node) {
+		visitChildren(node);
+
+		if(report) {
+			for(int i = 0; i < inlinedCalls.size(); i++) {
+				System.err.println("[INLINE] " + inlinedCalls.get(i));
+			}
+			System.err.println("[INLINE] " + inlinedCalls.size()
+					+ " call(s) inlined");
+		}
+	}
+
+	@Override
+	public void visit(Ast.FunctionDeclarationNode node) {
+		// forward declaration
+		if(node.children.get(2) == null) {
+			return;
+		}
+
+		visitChildren(node);
+	}
+
+	@Override
+	public void visit(Ast.FunctionCallNode node) {
+		visitChildren(node);
+
+		// Calls outside of a function initialize globals, there is no frame
+		// to put the temporaries in.
+		if(node.owner == null || !canInline(node)) {
+			return;
+		}
+
+		Ast.InlinedCallNode inlined = new Ast.InlinedCallNode(node.id,
+				node.symbol, node.getType());
+		inlined.line = node.line;
+		inlined.scope = node.scope;
+
+		Vector<VarSymbol> temps = new Vector<VarSymbol>();
+		for(int i = 0; i < node.children.size(); i++) {
+			Ast.DeclarationNode temp = Passes.temporary("inline" + tempCounter,
+					node.symbol.paramTypes.get(i), node.getParamExpression(i),
+					node.owner, node);
+			tempCounter += 1;
+			inlined.addChild(i, temp);
+			temps.add((VarSymbol) temp.symbol);
+		}
+
+		Ast.ExpressionNode body = null;
+		if(node.symbol.builtin) {
+			body = builtinBody(node, temps);
+		} else {
+			body = inlineBody(node, temps);
+		}
+
+		inlined.addChild(inlined.children.size(), body);
+		node.parent.replaceNode(node, inlined);
+		inlined.parent = node.parent;
+		inlined.cast = node.cast;
+
+		inlinedCalls.add("line " + node.line + ": '" + node.id
+				+ "' inlined into '" + node.owner.id + "'");
+	}
+
+	/**
+	 * Check if the call can be inlined
+	 *
+	 * @param call
+	 * @return
+	 */
+	private boolean canInline(Ast.FunctionCallNode call) {
+		if(call.symbol.builtin) {
+			return call.id.equals("chartoint") || call.id.equals("isdigit");
+		}
+
+		Ast.FunctionDeclarationNode callee = call.symbol.declaration;
+
+		// Nested functions may use variables of the enclosing functions
+		if(callee.owner != null || callee.children.get(2) == null
+				|| call.symbol.variadic) {
+			return false;
+		}
+
+		Ast.BlockStatementNode block = callee.getBlock();
+		if(block.children.size() != 1
+				|| !(block.children.get(0) instanceof Ast.ReturnStatementNode)) {
+			return false;
+		}
+
+		Ast.Node expression = ((Ast.ReturnStatementNode) block.children.get(0))
+				.getExpression();
+
+		return expression instanceof Ast.ExpressionNode
+				&& expression.countNodes() <= maxSize && isLeaf(expression);
+	}
+
+	/**
+	 * Copy the expression returned by the callee
+	 *
+	 * @param call
+	 *            : the call to inline
+	 * @param temps
+	 *            : symbols of the temporaries holding the arguments
+	 * @return
+	 */
+	private Ast.ExpressionNode inlineBody(Ast.FunctionCallNode call,
+			Vector<VarSymbol> temps) {
+		Ast.FunctionDeclarationNode callee = call.symbol.declaration;
+		Ast.ReturnStatementNode ret = (Ast.ReturnStatementNode) callee
+				.getBlock().children.get(0);
+
+		Vector<Symbol> params = new Vector<Symbol>();
+		for(int i = 0; i < callee.getParams().children.size(); i++) {
+			params.add(((Ast.FormalParameterNode) callee.getParams().children
+					.get(i)).symbol);
+		}
+
+		Ast.Node body = ret.getExpression().deepCopy();
+		rebind(body, call.owner, params, temps);
+
+		return (Ast.ExpressionNode) body;
+	}
+
+	/**
+	 * Build the expression for an inlined builtin
+	 *
+	 * @param call
+	 *            : the call to inline
+	 * @param temps
+	 *            : symbols of the temporaries holding the arguments
+	 * @return
+	 */
+	private Ast.ExpressionNode builtinBody(Ast.FunctionCallNode call,
+			Vector<VarSymbol> temps) {
+		if(call.id.equals("chartoint")) {
+			// (int) c - (int) '0'
+			Ast.CharToIntExpressionNode c = new Ast.CharToIntExpressionNode();
+			c.setExpression(Passes.use(temps.get(0), call.owner, call.line));
+			Ast.CharToIntExpressionNode zero = new Ast.CharToIntExpressionNode();
+			zero.setExpression(new Ast.CharNode('0'));
+
+			return createBinary(call, Operator.SUBTRACT, c, zero);
+		}
+
+		if(call.id.equals("isdigit")) {
+			// c >= '0' && c <= '9'
+			Ast.BinaryOperatorNode geq = createBinary(call, Operator.GREATER_EQUAL,
+					Passes.use(temps.get(0), call.owner, call.line),
+					new Ast.CharNode('0'));
+			Ast.BinaryOperatorNode leq = createBinary(call, Operator.LESS_EQUAL,
+					Passes.use(temps.get(0), call.owner, call.line),
+					new Ast.CharNode('9'));
+
+			return createBinary(call, Operator.AND, geq, leq);
+		}
+
+		Log.fatal("Builtin can't be inlined: " + call.id, call.line);
+		return null;
+	}
+
+	/**
+	 * Check if the expression doesn't call functions or declare variables
+	 *
+	 * @param node
+	 * @return
+	 */
+	private static boolean isLeaf(Ast.Node node) {
+		if(node instanceof Ast.FunctionCallNode
+				|| node instanceof Ast.InlinedCallNode
+				|| node instanceof Ast.DeclarationNode) {
+			return false;
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			if(!isLeaf(node.children.get(i))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Move the copied body of the callee into the caller
+	 *
+	 * Uses of the parameters are replaced by uses of the temporaries.
+	 *
+	 * @param node
+	 * @param caller
+	 * @param params
+	 * @param temps
+	 */
+	private static void rebind(Ast.Node node,
+			Ast.FunctionDeclarationNode caller, Vector<Symbol> params,
+			Vector<VarSymbol> temps) {
+		if(node instanceof Ast.IdNode) {
+			Ast.IdNode id = (Ast.IdNode) node;
+			int param = params.indexOf(id.getSymbol());
+			if(param != -1) {
+				id.setSymbol(temps.get(param));
+			}
+			id.function = caller;
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			rebind(node.children.get(i), caller, params, temps);
+		}
+	}
+
+	private static Ast.BinaryOperatorNode createBinary(
+			Ast.FunctionCallNode call, Operator operator, Ast.ExpressionNode left,
+			Ast.ExpressionNode right) {
+		Ast.BinaryOperatorNode node = new Ast.BinaryOperatorNode(operator, left,
+				right);
+		node.line = call.line;
+		node.setType(new Ast.IntTypeNode());
+
+		return node;
+	}
+}
@@ -0,0 +1,266 @@
+package Compiler;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Vector;
+
+import Compiler.ControlFlowGraph.BasicBlock;
+
+/**
+ * @brief Removes jumps from the generated P-code
+ *
+ *        Jumps to a jump are retargeted to the final destination and jumps to
+ *        a return are replaced by the return. Code that can't be reached is
+ *        removed, functions nested in a block are moved to the end of the
+ *        program so the jump around them isn't needed and finally jumps to the
+ *        next instruction are removed.
+ */
+public class JumpThreading {
+
+	public static boolean report = false;
+
+	public int retargeted = 0;
+	public int removed = 0;
+	public int unreachable = 0;
+
+	/**
+	 * Optimize the jumps until nothing changes anymore
+	 *
+	 * @param instructions
+	 * @return
+	 */
+	public Vector<String> optimize(Vector<String> instructions) {
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+
+			Vector<String> result = threadJumps(instructions);
+			result = removeUnreachable(result);
+			result = moveFunctions(result);
+			result = removeJumpsToNext(result);
+
+			changed = !result.equals(instructions);
+			instructions = result;
+		}
+
+		if(report) {
+			System.err.println("[JUMPS] " + retargeted + " jump(s) retargeted");
+			System.err.println("[JUMPS] " + removed + " jump(s) removed");
+			System.err.println("[JUMPS] " + unreachable
+					+ " unreachable instruction(s) removed");
+		}
+
+		return instructions;
+	}
+
+	/**
+	 * Get the label a jump to the label ends up at
+	 *
+	 * @param cfg
+	 * @param label
+	 * @return
+	 */
+	private static String finalTarget(ControlFlowGraph cfg, String label) {
+		Set<String> visited = new HashSet<String>();
+
+		while(visited.add(label)) {
+			String first = firstInstruction(cfg, label);
+			if(first == null
+					|| !ControlFlowGraph.getOpcode(first).equals("ujp")) {
+				return label;
+			}
+			label = ControlFlowGraph.getTarget(first);
+		}
+
+		// Infinite loop of jumps
+		return label;
+	}
+
+	/**
+	 * Get the first instruction executed after jumping to the label
+	 *
+	 * @param cfg
+	 * @param label
+	 * @return instruction, null if there is none
+	 */
+	private static String firstInstruction(ControlFlowGraph cfg, String label) {
+		BasicBlock block = cfg.getBlock(label);
+
+		while(block != null) {
+			for(int i = 0; i < block.instructions.size(); i++) {
+				if(!CodeGenVisitor.isLineMarker(block.instructions.get(i))) {
+					return block.instructions.get(i);
+				}
+			}
+
+			// Only line markers, continues with the next block
+			if(block.id + 1 == cfg.blocks.size()) {
+				return null;
+			}
+			block = cfg.blocks.get(block.id + 1);
+		}
+
+		return null;
+	}
+
+	private Vector<String> threadJumps(Vector<String> instructions) {
+		ControlFlowGraph cfg = new ControlFlowGraph(instructions);
+
+		for(int i = 0; i < cfg.blocks.size(); i++) {
+			BasicBlock block = cfg.blocks.get(i);
+			String last = block.getLastInstruction();
+			if(last == null) {
+				continue;
+			}
+
+			String opcode = ControlFlowGraph.getOpcode(last);
+			if(!opcode.equals("ujp") && !opcode.equals("fjp")) {
+				continue;
+			}
+
+			String target = ControlFlowGraph.getTarget(last);
+			String destination = finalTarget(cfg, target);
+
+			String replacement = opcode + " " + destination;
+			if(opcode.equals("ujp")) {
+				// Jumping to a return is the same as returning
+				String first = firstInstruction(cfg, destination);
+				if(first != null
+						&& !ControlFlowGraph.getOpcode(first).equals("ujp")
+						&& ControlFlowGraph.isUnconditional(first)) {
+					replacement = first;
+				}
+			}
+
+			if(!replacement.equals(last)) {
+				block.instructions.set(block.instructions.size() - 1,
+						replacement);
+				retargeted += 1;
+			}
+		}
+
+		return cfg.toInstructions();
+	}
+
+	private Vector<String> removeUnreachable(Vector<String> instructions) {
+		ControlFlowGraph cfg = new ControlFlowGraph(instructions);
+
+		for(int i = cfg.blocks.size() - 1; i >= 0; i--) {
+			if(!cfg.blocks.get(i).reachable) {
+				Vector<String> dead = cfg.blocks.get(i).instructions;
+				for(int j = 0; j < dead.size(); j++) {
+					if(!CodeGenVisitor.isLineMarker(dead.get(j))) {
+						unreachable += 1;
+					}
+				}
+				cfg.blocks.remove(i);
+			}
+		}
+
+		return cfg.toInstructions();
+	}
+
+	/**
+	 * Move code that is only entered by calls to the end of the program
+	 *
+	 * This is the code of functions nested in a block, which is jumped over
+	 * by the enclosing function.
+	 *
+	 * @param instructions
+	 * @return
+	 */
+	private Vector<String> moveFunctions(Vector<String> instructions) {
+		ControlFlowGraph cfg = new ControlFlowGraph(instructions);
+
+		String end = cfg.blocks.lastElement().getLastInstruction();
+		if(end == null || !ControlFlowGraph.isUnconditional(end)) {
+			return instructions;
+		}
+
+		Vector<BasicBlock> moved = new Vector<BasicBlock>();
+		for(int i = 0; i < cfg.blocks.size(); i++) {
+			BasicBlock block = cfg.blocks.get(i);
+			String last = block.getLastInstruction();
+			if(last == null || !ControlFlowGraph.getOpcode(last).equals("ujp")) {
+				continue;
+			}
+
+			BasicBlock target = cfg.getBlock(ControlFlowGraph.getTarget(last));
+			if(target == null || target.id <= i + 1
+					|| !isClosed(cfg, i + 1, target.id)) {
+				continue;
+			}
+
+			for(int j = i + 1; j < target.id; j++) {
+				moved.add(cfg.blocks.get(j));
+			}
+			i = target.id - 1;
+		}
+
+		cfg.blocks.removeAll(moved);
+		cfg.blocks.addAll(moved);
+
+		return cfg.toInstructions();
+	}
+
+	/**
+	 * Check if the blocks can only be entered by calls and don't fall through
+	 * to the block after them
+	 *
+	 * @param cfg
+	 * @param from
+	 *            : first block
+	 * @param to
+	 *            : block after the last block
+	 * @return
+	 */
+	private static boolean isClosed(ControlFlowGraph cfg, int from, int to) {
+		String last = cfg.blocks.get(to - 1).getLastInstruction();
+		if(last == null || !ControlFlowGraph.isUnconditional(last)) {
+			return false;
+		}
+
+		for(int i = from; i < to; i++) {
+			BasicBlock block = cfg.blocks.get(i);
+			for(int p = 0; p < block.predecessors.size(); p++) {
+				int id = block.predecessors.get(p).id;
+				if(id < from || id >= to) {
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	private Vector<String> removeJumpsToNext(Vector<String> instructions) {
+		Vector<String> result = new Vector<String>();
+
+		for(int i = 0; i < instructions.size(); i++) {
+			String instruction = instructions.get(i);
+
+			if(ControlFlowGraph.getOpcode(instruction).equals("ujp")) {
+				String target = ControlFlowGraph.getTarget(instruction);
+				boolean next = false;
+				for(int j = i + 1; j < instructions.size()
+						&& (ControlFlowGraph.isLabel(instructions.get(j)) || CodeGenVisitor
+								.isLineMarker(instructions.get(j))); j++) {
+					if(ControlFlowGraph.isLabel(instructions.get(j))
+							&& ControlFlowGraph.getLabel(instructions.get(j))
+									.equals(target)) {
+						next = true;
+					}
+				}
+
+				if(next) {
+					removed += 1;
+					continue;
+				}
+			}
+
+			result.add(instruction);
+		}
+
+		return result;
+	}
+}
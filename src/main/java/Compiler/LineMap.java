@@ -0,0 +1,140 @@
+package Compiler;
+
+import java.util.Map;
+import java.util.Vector;
+
+import Compiler.ControlFlowGraph.BasicBlock;
+
+/**
+ * @brief Maps the generated instructions to source lines and functions
+ *
+ *        Consecutive instructions of the same source line and function form a
+ *        range. Every instruction belongs to the function whose label is at
+ *        the top of its dominator tree, code before the first label belongs to
+ *        "<start>".
+ */
+public class LineMap {
+
+	public static class Range {
+		public int first; // first instruction, counted from 1
+		public int last;
+		public int line; // 0 when it doesn't belong to a source line
+		public String label;
+		public String function;
+	}
+
+	public Vector<Range> ranges = new Vector<Range>();
+
+	private Vector<Integer> lines;
+	private Vector<String> labels = new Vector<String>();
+
+	/**
+	 * @param instructions
+	 * @param lines
+	 *            : source line of every instruction
+	 * @param names
+	 *            : source name of the function labels
+	 */
+	public LineMap(Vector<String> instructions, Vector<Integer> lines,
+			Map<String, String> names) {
+		this.lines = lines;
+
+		ControlFlowGraph cfg = new ControlFlowGraph(instructions);
+		String[] functions = new String[cfg.blocks.size()];
+		for(int i = 0; i < cfg.blocks.size(); i++) {
+			String label = function(cfg, i, names, functions);
+			BasicBlock block = cfg.blocks.get(i);
+			for(int j = 0; j < block.labels.size() + block.instructions.size(); j++) {
+				labels.add(label);
+			}
+		}
+
+		Range range = null;
+		for(int i = 0; i < instructions.size(); i++) {
+			if(range == null || range.line != lines.get(i)
+					|| !range.label.equals(labels.get(i))) {
+				range = new Range();
+				range.first = i + 1;
+				range.line = lines.get(i);
+				range.label = labels.get(i);
+				range.function = names.containsKey(range.label) ? names
+						.get(range.label) : range.label;
+				ranges.add(range);
+			}
+			range.last = i + 1;
+		}
+	}
+
+	/**
+	 * Get the label of the function a block belongs to
+	 *
+	 * Blocks without a dominator are the entries, code that is never called,
+	 * like unused builtins, belongs to the function before it.
+	 *
+	 * @param cfg
+	 * @param id
+	 *            : block
+	 * @param names
+	 * @param functions
+	 *            : label of the blocks done so far
+	 * @return
+	 */
+	private static String function(ControlFlowGraph cfg, int id,
+			Map<String, String> names, String[] functions) {
+		if(functions[id] != null) {
+			return functions[id];
+		}
+
+		BasicBlock block = cfg.blocks.get(id);
+		if(block.dominator != null) {
+			BasicBlock entry = block;
+			while(entry.dominator != null) {
+				entry = entry.dominator;
+			}
+			functions[id] = function(cfg, entry.id, names, functions);
+		} else if(block.labels.size() > 0
+				&& (block.entry || names.containsKey(block.labels.get(0)))) {
+			functions[id] = block.labels.get(0);
+		} else if(id == 0) {
+			functions[id] = "<start>";
+		} else {
+			functions[id] = function(cfg, id - 1, names, functions);
+		}
+
+		return functions[id];
+	}
+
+	/**
+	 * @param index
+	 *            : index of the instruction
+	 * @return source line, 0 when there is none
+	 */
+	public int getLine(int index) {
+		return lines.get(index);
+	}
+
+	/**
+	 * @param index
+	 *            : index of the instruction
+	 * @return label of the function
+	 */
+	public String getFunction(int index) {
+		return labels.get(index);
+	}
+
+	/**
+	 * One range per line: first and last instruction, source line, function
+	 * label and source name of the function
+	 */
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for(int i = 0; i < ranges.size(); i++) {
+			Range range = ranges.get(i);
+			result.append(range.first + "\t" + range.last + "\t" + range.line
+					+ "\t" + range.label + "\t" + range.function + "\n");
+		}
+
+		return result.toString();
+	}
+}
@@ -1,5 +1,10 @@
 package Compiler;
 
+import java.io.PrintStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Vector;
+
 /**
  * @brief Logger
  *
@@ -14,15 +19,143 @@ public class Log {
 	public static boolean debug = true;
 	public static boolean exception = false;
 
+	// Several compilations can run at the same time in one process, each on
+	// its own thread. Where the messages go, what a fatal error does and the
+	// collected errors and warnings are kept per thread.
+	private static final ThreadLocal<PrintStream> out = new ThreadLocal<PrintStream>() {
+		@Override
+		protected PrintStream initialValue() {
+			return System.out;
+		}
+	};
+	private static final ThreadLocal<Boolean> exit = new ThreadLocal<Boolean>() {
+		@Override
+		protected Boolean initialValue() {
+			return true;
+		}
+	};
+
 	public static class FatalException extends RuntimeException {
 		public FatalException(String msg) {
 			super(msg);
 		}
 	}
 
+	// Thrown after an error was collected, the analysis goes on with the
+	// next statement
+	public static class RecoverException extends RuntimeException {
+		public RecoverException(String msg) {
+			super(msg);
+		}
+	}
+
+	public static class Diagnostic {
+		public boolean error;
+		public String message;
+		public int line;
+	}
+
+	// Errors and warnings of the analysis, null when they are printed
+	// immediately
+	private static final ThreadLocal<Vector<Diagnostic>> diagnostics = new ThreadLocal<Vector<Diagnostic>>();
+
+	/**
+	 * Write the messages of this thread to a stream
+	 *
+	 * @param stream
+	 */
+	public static void setOut(PrintStream stream) {
+		out.set(stream);
+	}
+
+	/**
+	 * Choose whether a fatal error on this thread exits or throws
+	 * FatalException
+	 *
+	 * @param value
+	 */
+	public static void setExit(boolean value) {
+		exit.set(value);
+	}
+
+	/**
+	 * Collect the errors and warnings of this thread instead of stopping at
+	 * the first error
+	 */
+	public static void collect() {
+		diagnostics.set(new Vector<Diagnostic>());
+	}
+
+	/**
+	 * Drop the collected errors and warnings and stop collecting
+	 */
+	public static void discard() {
+		diagnostics.remove();
+	}
+
+	/**
+	 * Print the collected errors and warnings ordered by line and stop
+	 * collecting, fails like fatal if there were errors
+	 */
+	public static void report() {
+		Vector<Diagnostic> collected = diagnostics.get();
+		diagnostics.remove();
+		if(collected == null) {
+			return;
+		}
+
+		Collections.sort(collected, new Comparator<Diagnostic>() {
+			@Override
+			public int compare(Diagnostic a, Diagnostic b) {
+				return Integer.compare(a.line, b.line);
+			}
+		});
+
+		int errors = 0;
+		for(int i = 0; i < collected.size(); i++) {
+			Diagnostic diagnostic = collected.get(i);
+			if(diagnostic.error) {
+				printError(diagnostic.message, diagnostic.line);
+				errors += 1;
+			} else {
+				printWarning(diagnostic.message, diagnostic.line);
+			}
+		}
+
+		if(errors > 0) {
+			if(exit.get()) {
+				System.exit(1);
+			}
+			throw new FatalException(errors + " error(s)");
+		}
+	}
+
+	private static void add(boolean error, String message, int line) {
+		Diagnostic diagnostic = new Diagnostic();
+		diagnostic.error = error;
+		diagnostic.message = message;
+		diagnostic.line = line;
+		diagnostics.get().add(diagnostic);
+	}
+
+	private static void printError(String message, int line) {
+		if(!level.equals("NONE")) {
+			out.get().println((char) 27 + "[31m" + "[ERROR] line " + line
+					+ ": " + message + (char) 27 + "[0m");
+		}
+	}
+
+	private static void printWarning(String message, int line) {
+		if(!level.equals("NONE") && !level.equals("ERROR")) {
+			out.get().println("[WARNING] line " + line + ": " + message);
+		}
+	}
+
 	/**
 	 * Log fatal error (program will be killed)
 	 *
+	 * While collecting, the error is kept and RecoverException is thrown
+	 *
 	 * @param message
 	 * @param line
 	 */
@@ -30,10 +163,16 @@ public class Log {
 		if(exception) {
 			throw new FatalException(line + ": " + message);
 		}
+		if(diagnostics.get() != null) {
+			add(true, message, line);
+			throw new RecoverException(line + ": " + message);
+		}
 		if(!level.equals("NONE")) {
-			System.out.println((char) 27 + "[31m" + "[ERROR] line " + line
-					+ ": " + message + (char) 27 + "[0m");
-			System.exit(1);
+			printError(message, line);
+			if(exit.get()) {
+				System.exit(1);
+			}
+			throw new FatalException(line + ": " + message);
 		}
 	}
 
@@ -47,8 +186,10 @@ public class Log {
 		if(exception) {
 			throw new FatalException(line + ": " + message);
 		}
-		if(!level.equals("NONE") && !level.equals("ERROR")) {
-			System.out.println("[WARNING] line " + line + ": " + message);
+		if(diagnostics.get() != null) {
+			add(false, message, line);
+		} else {
+			printWarning(message, line);
 		}
 	}
 
@@ -61,7 +202,7 @@ public class Log {
 	public static void notice(String message, int line) {
 		if(!level.equals("NONE") && !level.equals("ERROR")
 				&& !level.equals("WARNING")) {
-			System.out.println("[NOTICE] line " + line + ": " + message);
+			out.get().println("[NOTICE] line " + line + ": " + message);
 		}
 	}
 
@@ -72,7 +213,7 @@ public class Log {
 	 */
 	public static void debug(String message) {
 		if(debug) {
-			System.out.println("[DEBUG] " + message);
+			out.get().println("[DEBUG] " + message);
 		}
 	}
 
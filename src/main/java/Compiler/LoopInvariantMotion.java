@@ -0,0 +1,408 @@
+package Compiler;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Vector;
+
+import Compiler.SymbolTableVisitor.Symbol;
+import Compiler.SymbolTableVisitor.VarSymbol;
+
+/**
+ * @brief Moves loop invariant expressions out of while and for loops
+ *
+ *        An expression in the condition, body or step of a loop is invariant
+ *        when it only reads variables the loop doesn't change, so it can be
+ *        computed once before the loop into a temporary. The temporary is a
+ *        declaration in the frame of the function, like the temporaries of
+ *        the Inliner.
+ *
+ *        A local of the function is changed by the loop if it is assigned,
+ *        incremented or declared in it, or if the loop calls a nested
+ *        function. Globals, locals of enclosing functions, locals whose
+ *        address is taken and everything read through a pointer or subscript
+ *        are also changed by a store through a pointer or subscript and by a
+ *        call to a function that isn't known to leave memory alone.
+ *
+ *        Only operators, casts, subscripts of arrays, dereferences and calls
+ *        to the pure builtins strlen, isdigit, chartoint and pow are moved.
+ *        Expressions that can stop the program (a division, a load through a
+ *        pointer or strlen of a pointer) are only moved from the part of the
+ *        condition that runs before anything else in every loop, so moving
+ *        them doesn't make the program stop where it didn't.
+ */
+public class LoopInvariantMotion extends Visitor {
+
+	public static boolean report = false;
+
+	public Vector<String> hoisted = new Vector<String>();
+
+	private int tempCounter = 0;
+
+	/**
+	 * @brief What a loop changes
+	 */
+	private static class Loop {
+		public Ast.FunctionDeclarationNode function;
+		public Set<Symbol> changed = new HashSet<Symbol>();
+		public boolean memory = false; // stores through pointers or calls
+		public boolean nestedCall = false; // calls a nested function
+	}
+
+	@Override
+	public void visit(Ast.FileNode node) {
+		visitChildren(node);
+
+		if(report) {
+			for(int i = 0; i < hoisted.size(); i++) {
+				System.err.println("[LICM] " + hoisted.get(i));
+			}
+			System.err.println("[LICM] " + hoisted.size()
+					+ " expression(s) moved out of loops");
+		}
+	}
+
+	@Override
+	public void visit(Ast.FunctionDeclarationNode node) {
+		// forward declaration
+		if(node.children.get(2) == null) {
+			return;
+		}
+
+		visitChildren(node);
+	}
+
+	@Override
+	public void visit(Ast.WhileStatementNode node) {
+		// Inner loops first, their invariants may be invariant here too
+		visitChildren(node);
+
+		Loop loop = analyze(node, 0);
+		if(loop == null) {
+			return;
+		}
+
+		Vector<Ast.ExpressionNode> found = new Vector<Ast.ExpressionNode>();
+		boolean first = !hasCall(node.getCondition());
+		find(node.getCondition(), loop, first, found);
+		for(int i = 1; i < node.children.size(); i++) {
+			find(node.children.get(i), loop, false, found);
+		}
+
+		for(int i = 0; i < found.size(); i++) {
+			node.addInvariant(hoist(found.get(i), loop));
+		}
+	}
+
+	@Override
+	public void visit(Ast.ForStatementNode node) {
+		visitChildren(node);
+
+		// The initialization runs once, before the invariants
+		Loop loop = analyze(node, 1);
+		if(loop == null) {
+			return;
+		}
+
+		Vector<Ast.ExpressionNode> found = new Vector<Ast.ExpressionNode>();
+		boolean first = !hasCall(node.getCondition());
+		find(node.getCondition(), loop, first, found);
+		for(int i = 2; i < node.children.size(); i++) {
+			find(node.children.get(i), loop, false, found);
+		}
+
+		for(int i = 0; i < found.size(); i++) {
+			node.addInvariant(hoist(found.get(i), loop));
+		}
+	}
+
+	/**
+	 * Find what the loop changes
+	 *
+	 * @param node
+	 * @param from
+	 *            : first child that is part of the loop
+	 * @return null if the loop isn't in a function
+	 */
+	private static Loop analyze(Ast.Node node, int from) {
+		Loop loop = new Loop();
+		loop.function = Passes.enclosingFunction(node);
+		if(loop.function == null) {
+			return null;
+		}
+
+		for(int i = from; i < node.children.size(); i++) {
+			changes(node.children.get(i), loop);
+		}
+
+		return loop;
+	}
+
+	/**
+	 * Collect the variables and memory the subtree changes
+	 */
+	private static void changes(Ast.Node node, Loop loop) {
+		if(node == null || node instanceof Ast.FunctionDeclarationNode) {
+			return;
+		}
+
+		Ast.Node target = null;
+		if(node instanceof Ast.BinaryOperatorNode) {
+			Ast.BinaryOperatorNode binary = (Ast.BinaryOperatorNode) node;
+			if(binary.operator.rule == Operator.Rule.ASSIGNMENT
+					|| binary.operator.rule == Operator.Rule.COMPOUND_ASSIGNMENT) {
+				target = binary.getLeftChild();
+			}
+		} else if(node instanceof Ast.UnaryOperatorNode) {
+			Ast.UnaryOperatorNode unary = (Ast.UnaryOperatorNode) node;
+			if(unary.operator.rule == Operator.Rule.INCREMENT) {
+				target = unary.getExpression();
+			}
+		} else if(node instanceof Ast.DeclarationNode) {
+			loop.changed.add(((Ast.DeclarationNode) node).symbol);
+		} else if(node instanceof Ast.FunctionCallNode) {
+			Ast.FunctionCallNode call = (Ast.FunctionCallNode) node;
+			if(!Passes.isReadOnly(call)) {
+				loop.memory = true;
+			}
+			if(call.symbol.declaration != null
+					&& call.symbol.declaration.owner != null) {
+				loop.nestedCall = true;
+			}
+		}
+
+		if(target instanceof Ast.IdNode) {
+			loop.changed.add(((Ast.IdNode) target).getSymbol());
+		} else if(target != null) {
+			loop.memory = true;
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			changes(node.children.get(i), loop);
+		}
+	}
+
+	/**
+	 * Check if the subtree calls a function other than the pure builtins,
+	 * output of the call would come after an error of a moved expression
+	 */
+	private static boolean hasCall(Ast.Node node) {
+		if(node instanceof Ast.FunctionCallNode
+				&& !Passes.isPure((Ast.FunctionCallNode) node)) {
+			return true;
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			if(hasCall(node.children.get(i))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Find the largest invariant expressions worth moving
+	 *
+	 * @param first
+	 *            whether the subtree runs first in every iteration
+	 */
+	private static void find(Ast.Node node, Loop loop, boolean first,
+			Vector<Ast.ExpressionNode> found) {
+		if(node == null || node instanceof Ast.FunctionDeclarationNode
+				|| node instanceof Ast.InitializerListNode) {
+			return;
+		}
+
+		if(node instanceof Ast.ExpressionNode && Passes.isValue(node)) {
+			Ast.ExpressionNode expression = (Ast.ExpressionNode) node;
+			if(Passes.isScalar(expression.getType()) && cost(expression) > 1
+					&& isInvariant(expression, loop) && isSafe(expression, first)) {
+				found.add(expression);
+				return;
+			}
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			// Only the left side of && and || runs every time
+			boolean always = first;
+			if(node instanceof Ast.BinaryOperatorNode
+					&& ((Ast.BinaryOperatorNode) node).operator.rule == Operator.Rule.LOGICAL
+					&& i > 0) {
+				always = false;
+			}
+			find(node.children.get(i), loop, always, found);
+		}
+	}
+
+	/**
+	 * Estimate the number of instructions computing the expression
+	 */
+	private static int cost(Ast.Node node) {
+		if(node instanceof Ast.IdNode || node instanceof Ast.LiteralNode) {
+			return 1;
+		}
+		if(node instanceof Ast.ReferenceExpressionNode
+				&& node.children.get(0) instanceof Ast.IdNode) {
+			return 1;
+		}
+
+		int cost = 1;
+		if(node instanceof Ast.ArrayToPointerExpressionNode
+				|| node instanceof Ast.PointerToPointerExpressionNode
+				|| node instanceof Ast.ParamNode) {
+			cost = 0;
+		}
+		for(int i = 0; i < node.children.size(); i++) {
+			cost += cost(node.children.get(i));
+		}
+
+		return cost;
+	}
+
+	/**
+	 * Check if the loop doesn't change the value of the expression
+	 */
+	private static boolean isInvariant(Ast.Node node, Loop loop) {
+		if(node instanceof Ast.LiteralNode) {
+			return true;
+		}
+
+		if(node instanceof Ast.IdNode) {
+			Symbol symbol = ((Ast.IdNode) node).getSymbol();
+			if(!(symbol instanceof VarSymbol)) {
+				return false;
+			}
+			// The address of an array never changes
+			if(symbol.type instanceof Ast.StaticArrayTypeNode) {
+				return true;
+			}
+			if(loop.nestedCall || loop.changed.contains(symbol)) {
+				return false;
+			}
+			if(Passes.isLocal((VarSymbol) symbol, loop.function)
+					&& !Passes.addressTaken(loop.function.getBlock(), symbol)) {
+				return true;
+			}
+
+			return !loop.memory;
+		}
+
+		if(node instanceof Ast.SubscriptExpressionNode
+				|| node instanceof Ast.DereferenceExpressionNode) {
+			if(loop.memory || loop.nestedCall) {
+				return false;
+			}
+		} else if(node instanceof Ast.FunctionCallNode) {
+			Ast.FunctionCallNode call = (Ast.FunctionCallNode) node;
+			if(!Passes.isPure(call) || call.id.equals("strlen") && loop.memory) {
+				return false;
+			}
+		} else if(node instanceof Ast.BinaryOperatorNode) {
+			Operator.Rule rule = ((Ast.BinaryOperatorNode) node).operator.rule;
+			if(rule == Operator.Rule.ASSIGNMENT
+					|| rule == Operator.Rule.COMPOUND_ASSIGNMENT) {
+				return false;
+			}
+		} else if(node instanceof Ast.UnaryOperatorNode) {
+			if(((Ast.UnaryOperatorNode) node).operator.rule == Operator.Rule.INCREMENT) {
+				return false;
+			}
+		} else if(!(node instanceof Ast.CastExpressionNode
+				|| node instanceof Ast.ReferenceExpressionNode || node instanceof Ast.ParamNode)) {
+			return false;
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			if(!isInvariant(node.children.get(i), loop)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Check if computing the expression earlier can't stop the program
+	 *
+	 * @param first
+	 *            whether the expression runs first in every iteration
+	 */
+	private static boolean isSafe(Ast.Node node, boolean first) {
+		boolean safe = true;
+
+		if(node instanceof Ast.BinaryOperatorNode) {
+			Ast.BinaryOperatorNode binary = (Ast.BinaryOperatorNode) node;
+			// Division by zero, the routine of % divides too
+			if(binary.operator == Operator.DIVIDE
+					|| binary.operator == Operator.REMAINDER) {
+				Ast.ExpressionNode right = binary.getRightChild();
+				safe = right instanceof Ast.IntNode
+						&& ((Ast.IntNode) right).value != 0;
+			}
+			if(binary.operator.rule == Operator.Rule.LOGICAL) {
+				return (safe || first) && isSafe(binary.getLeftChild(), first)
+						&& isSafe(binary.getRightChild(), false);
+			}
+		} else if(node instanceof Ast.DereferenceExpressionNode) {
+			safe = false;
+		} else if(node instanceof Ast.SubscriptExpressionNode) {
+			safe = inBounds((Ast.SubscriptExpressionNode) node);
+		} else if(node instanceof Ast.FunctionCallNode) {
+			Ast.FunctionCallNode call = (Ast.FunctionCallNode) node;
+			if(call.id.equals("strlen")) {
+				Ast.ExpressionNode string = call.getParamExpression(0);
+				safe = string instanceof Ast.StringNode
+						|| string instanceof Ast.ArrayToPointerExpressionNode;
+			}
+		}
+
+		if(!safe && !first) {
+			return false;
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			if(!isSafe(node.children.get(i), first)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Check if the subscript is a constant index of an array
+	 */
+	private static boolean inBounds(Ast.SubscriptExpressionNode subscript) {
+		Ast.TypeNode type = subscript.getArray().getType();
+		if(!(type instanceof Ast.StaticArrayTypeNode)
+				|| !(subscript.getIndex() instanceof Ast.IntNode)) {
+			return false;
+		}
+
+		int index = ((Ast.IntNode) subscript.getIndex()).value;
+		return index >= 0 && index < ((Ast.StaticArrayTypeNode) type).size;
+	}
+
+	/**
+	 * Replace the expression by a temporary that is computed before the loop
+	 *
+	 * @return the declaration of the temporary
+	 */
+	private Ast.DeclarationNode hoist(Ast.ExpressionNode expression, Loop loop) {
+		Ast.Node parent = expression.parent;
+
+		Ast.DeclarationNode temp = Passes.temporary("invariant" + tempCounter,
+				expression.getType(), expression, loop.function, expression);
+		tempCounter += 1;
+
+		Ast.IdNode id = Passes.use((VarSymbol) temp.symbol, loop.function,
+				expression.line);
+		parent.replaceNode(expression, id);
+		id.parent = parent;
+
+		hoisted.add("line " + expression.line + ": expression moved out of a loop in '"
+				+ loop.function.id + "'");
+
+		return temp;
+	}
+}
@@ -0,0 +1,162 @@
+package Compiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * @brief Time and memory used by every phase of the compiler
+ *
+ *        Wall time, CPU time and allocated bytes are measured for the current
+ *        thread. CPU time and allocated bytes are -1 when the JVM can't measure
+ *        them. Next to the phases, counts like the number of AST nodes can be
+ *        recorded.
+ */
+public class Metrics {
+
+	/**
+	 * @brief Measurements of one phase
+	 */
+	public static class Phase {
+		public String name;
+		public long wallTime = 0;
+		public long cpuTime = 0;
+		public long allocatedBytes = 0;
+	}
+
+	public Vector<Phase> phases = new Vector<Phase>();
+	public Map<String, Long> counts = new LinkedHashMap<String, Long>();
+
+	private ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+	private Phase current = null;
+	private long wallStart;
+	private long cpuStart;
+	private long allocatedStart;
+
+	/**
+	 * Start measuring a phase
+	 *
+	 * @param name
+	 */
+	public void start(String name) {
+		if(current != null) {
+			stop();
+		}
+
+		current = new Phase();
+		current.name = name;
+		cpuStart = cpuTime();
+		allocatedStart = allocatedBytes();
+		wallStart = System.nanoTime();
+	}
+
+	/**
+	 * Stop measuring the current phase
+	 */
+	public void stop() {
+		if(current == null) {
+			return;
+		}
+
+		long wallEnd = System.nanoTime();
+		long cpuEnd = cpuTime();
+		long allocatedEnd = allocatedBytes();
+
+		current.wallTime = wallEnd - wallStart;
+		current.cpuTime = cpuEnd == -1 ? -1 : cpuEnd - cpuStart;
+		current.allocatedBytes = allocatedEnd == -1 ? -1 : allocatedEnd
+				- allocatedStart;
+		phases.add(current);
+		current = null;
+	}
+
+	/**
+	 * Record a count
+	 *
+	 * @param name
+	 * @param value
+	 */
+	public void count(String name, long value) {
+		counts.put(name, value);
+	}
+
+	private long cpuTime() {
+		if(!bean.isCurrentThreadCpuTimeSupported()) {
+			return -1;
+		}
+
+		return bean.getCurrentThreadCpuTime();
+	}
+
+	private long allocatedBytes() {
+		if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+		if(!sunBean.isThreadAllocatedMemorySupported()
+				|| !sunBean.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+
+		return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Table with a line per phase and per count
+	 */
+	@Override
+	public String toString() {
+		StringBuilder table = new StringBuilder();
+		table.append(String.format("[METRICS] %-20s %12s %12s %12s%n", "phase",
+				"wall (ms)", "cpu (ms)", "alloc (KB)"));
+
+		for(int i = 0; i < phases.size(); i++) {
+			Phase phase = phases.get(i);
+			table.append(String.format("[METRICS] %-20s %12.2f %12.2f %12d%n",
+					phase.name, phase.wallTime / 1e6,
+					phase.cpuTime == -1 ? -1.0 : phase.cpuTime / 1e6,
+					phase.allocatedBytes == -1 ? -1 : phase.allocatedBytes / 1024));
+		}
+
+		for(Map.Entry<String, Long> count : counts.entrySet()) {
+			table.append("[METRICS] " + count.getKey() + ": " + count.getValue()
+					+ String.format("%n"));
+		}
+
+		return table.toString();
+	}
+
+	/**
+	 * Same as toString, as a JSON object
+	 *
+	 * Times are in nanoseconds.
+	 *
+	 * @return
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\n  \"phases\": [");
+
+		for(int i = 0; i < phases.size(); i++) {
+			Phase phase = phases.get(i);
+			json.append(i == 0 ? "\n" : ",\n");
+			json.append("    {\"name\": \"" + phase.name + "\", \"wallTime\": "
+					+ phase.wallTime + ", \"cpuTime\": " + phase.cpuTime
+					+ ", \"allocatedBytes\": " + phase.allocatedBytes + "}");
+		}
+		json.append("\n  ],\n  \"counts\": {");
+
+		boolean first = true;
+		for(Map.Entry<String, Long> count : counts.entrySet()) {
+			json.append(first ? "\n" : ",\n");
+			json.append("    \"" + count.getKey() + "\": " + count.getValue());
+			first = false;
+		}
+		json.append("\n  }\n}\n");
+
+		return json.toString();
+	}
+}
@@ -0,0 +1,138 @@
+package Compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @brief Operators of expressions
+ *
+ *        Every operator knows its symbol, its number of operands, the rule
+ *        that checks the operands and gives the type of the result, and the
+ *        P-machine instruction computing it. The P-machine has no instruction
+ *        for the integer operators, their opcode is the label of the routine
+ *        that computes them when they can't be written out inline. Precedence
+ *        is the order of the alternatives of expr in the grammar.
+ */
+public enum Operator {
+
+	ASSIGN("=", 2, Rule.ASSIGNMENT, "sto", null),
+	EQUAL("==", 2, Rule.COMPARISON, "equ", "neq"),
+	NOT_EQUAL("!=", 2, Rule.COMPARISON, "neq", "equ"),
+	GREATER(">", 2, Rule.COMPARISON, "grt", "leq"),
+	GREATER_EQUAL(">=", 2, Rule.COMPARISON, "geq", "les"),
+	LESS("<", 2, Rule.COMPARISON, "les", "geq"),
+	LESS_EQUAL("<=", 2, Rule.COMPARISON, "leq", "grt"),
+	AND("&&", 2, Rule.LOGICAL, "and", null),
+	OR("||", 2, Rule.LOGICAL, "or", null),
+	ADD("+", 2, Rule.ARITHMETIC, "add", null),
+	SUBTRACT("-", 2, Rule.ARITHMETIC, "sub", null),
+	MULTIPLY("*", 2, Rule.ARITHMETIC, "mul", null),
+	DIVIDE("/", 2, Rule.ARITHMETIC, "div", null),
+	REMAINDER("%", 2, Rule.INTEGER, "remainder", null),
+	SHIFT_LEFT("<<", 2, Rule.INTEGER, "shiftleft", null),
+	SHIFT_RIGHT(">>", 2, Rule.INTEGER, "shiftright", null),
+	BITWISE_AND("&", 2, Rule.INTEGER, "bitand", null),
+	BITWISE_OR("|", 2, Rule.INTEGER, "bitor", null),
+	BITWISE_XOR("^", 2, Rule.INTEGER, "bitxor", null),
+	INCREMENT("++", 1, Rule.INCREMENT, "inc", null),
+	DECREMENT("--", 1, Rule.INCREMENT, "dec", null),
+	NOT("!", 1, Rule.NOT, "not", null),
+	NEGATE("-", 1, Rule.NEGATE, "neg", null),
+	COMPLEMENT("~", 1, Rule.COMPLEMENT, "neg", null),
+	ADD_ASSIGN("+=", ADD),
+	SUBTRACT_ASSIGN("-=", SUBTRACT),
+	MULTIPLY_ASSIGN("*=", MULTIPLY),
+	DIVIDE_ASSIGN("/=", DIVIDE),
+	REMAINDER_ASSIGN("%=", REMAINDER),
+	SHIFT_LEFT_ASSIGN("<<=", SHIFT_LEFT),
+	SHIFT_RIGHT_ASSIGN(">>=", SHIFT_RIGHT),
+	BITWISE_AND_ASSIGN("&=", BITWISE_AND),
+	BITWISE_OR_ASSIGN("|=", BITWISE_OR),
+	BITWISE_XOR_ASSIGN("^=", BITWISE_XOR);
+
+	/**
+	 * @brief How the operands are checked and the result type is found
+	 */
+	public enum Rule {
+		ASSIGNMENT, // right side converted to the left side
+		COMPOUND_ASSIGNMENT, // operation on the left side, stored in it
+		COMPARISON, // operands made consistent, int result
+		LOGICAL, // operands converted to int, int result, short-circuit
+		ARITHMETIC, // operands made consistent, computed as int
+		INTEGER, // int or char operands converted to int, int result
+		INCREMENT, // modifiable int, char or pointer
+		NOT, // int or char operand, int result
+		NEGATE, // int or char operand, same type result
+		COMPLEMENT // int or char operand converted to int, int result
+	}
+
+	public final String symbol;
+	public final int arity;
+	public final Rule rule;
+	public final String opcode;
+	public final String inverse; // opcode of the opposite comparison
+	public final Operator operation; // of a compound assignment
+
+	private static final Map<String, Operator> unary = new HashMap<String, Operator>();
+	private static final Map<String, Operator> binary = new HashMap<String, Operator>();
+	private static final Map<String, Operator> routines = new HashMap<String, Operator>();
+
+	static {
+		for(Operator operator : values()) {
+			(operator.arity == 1 ? unary : binary).put(operator.symbol,
+					operator);
+			if(operator.rule == Rule.INTEGER) {
+				routines.put(operator.opcode, operator);
+			}
+		}
+	}
+
+	private Operator(String symbol, int arity, Rule rule, String opcode,
+			String inverse) {
+		this.symbol = symbol;
+		this.arity = arity;
+		this.rule = rule;
+		this.opcode = opcode;
+		this.inverse = inverse;
+		this.operation = null;
+	}
+
+	private Operator(String symbol, Operator operation) {
+		this.symbol = symbol;
+		this.arity = 2;
+		this.rule = Rule.COMPOUND_ASSIGNMENT;
+		this.opcode = "sto";
+		this.inverse = null;
+		this.operation = operation;
+	}
+
+	/**
+	 * @param symbol
+	 * @return the unary operator, null if there is none
+	 */
+	public static Operator unary(String symbol) {
+		return unary.get(symbol);
+	}
+
+	/**
+	 * @param symbol
+	 * @return the binary operator, null if there is none
+	 */
+	public static Operator binary(String symbol) {
+		return binary.get(symbol);
+	}
+
+	/**
+	 * @param label
+	 * @return the operator computed by the routine with this label, null if
+	 *         there is none
+	 */
+	public static Operator routine(String label) {
+		return routines.get(label);
+	}
+
+	@Override
+	public String toString() {
+		return symbol;
+	}
+}
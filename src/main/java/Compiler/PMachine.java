@@ -0,0 +1,394 @@
+package Compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Vector;
+
+/**
+ * @brief Interpreter for the P-code generated by CodeGenVisitor
+ *
+ *        Implements the subset of the Pmachine instruction set that the
+ *        compiler emits. Values are stored as ints: characters by their code,
+ *        booleans as 0/1 and addresses as store indices.
+ */
+public class PMachine {
+
+	public static class PMachineException extends RuntimeException {
+		public PMachineException(String msg) {
+			super(msg);
+		}
+	}
+
+	/**
+	 * @brief Decoded P-code instruction
+	 */
+	public static class Instruction {
+		public String opcode;
+		public String text;
+		public char type = ' ';
+		public char type2 = ' ';
+		public int p = 0;
+		public int q = 0;
+		public String label;
+		public int target = -1;
+		public int[] values; // pushed by .data
+	}
+
+	public static int storeSize = 1 << 20;
+	public static long maxSteps = 100000000L;
+
+	public Vector<Instruction> program = new Vector<Instruction>();
+	public Map<String, Integer> labels = new HashMap<String, Integer>();
+
+	private int[] store;
+	private int sp;
+	private int mp;
+	private int ep;
+	private int pc;
+	private long steps;
+	private int maxSp;
+
+	private String input;
+	private int inputPos;
+	private StringBuilder output;
+
+	public PMachine(Vector<String> code) {
+		for(int i = 0; i < code.size(); i++) {
+			String line = code.get(i).trim();
+			if(line.length() == 0) {
+				continue;
+			}
+			if(line.endsWith(":")) {
+				labels.put(line.substring(0, line.length() - 1),
+						program.size());
+				continue;
+			}
+
+			program.add(decode(line));
+		}
+
+		for(int i = 0; i < program.size(); i++) {
+			Instruction ins = program.get(i);
+			if(ins.label != null) {
+				Integer target = labels.get(ins.label);
+				if(target == null) {
+					throw new PMachineException("Unknown label: "
+							+ ins.label);
+				}
+				ins.target = target;
+			}
+		}
+	}
+
+	private static Instruction decode(String line) {
+		Instruction ins = new Instruction();
+		String[] parts = line.split("\\s+");
+		ins.text = line;
+		ins.opcode = parts[0];
+
+		switch(ins.opcode) {
+		case "ujp":
+		case "fjp":
+			ins.label = parts[1];
+			break;
+		case "cup":
+			ins.p = Integer.parseInt(parts[1]);
+			ins.label = parts[2];
+			break;
+		case "mst":
+		case "ssp":
+		case "sep":
+			ins.p = Integer.parseInt(parts[1]);
+			break;
+		case "lda":
+			ins.p = Integer.parseInt(parts[1]);
+			ins.q = Integer.parseInt(parts[2]);
+			break;
+		case "lod":
+		case "str":
+			ins.type = parts[1].charAt(0);
+			ins.p = Integer.parseInt(parts[2]);
+			ins.q = Integer.parseInt(parts[3]);
+			break;
+		case "ldc":
+			ins.type = parts[1].charAt(0);
+			if(ins.type == 'b') {
+				ins.q = parts[2].equals("t") ? 1 : 0;
+			} else if(parts[2].startsWith("'")) {
+				ins.q = parts[2].charAt(1);
+			} else {
+				ins.q = Integer.parseInt(parts[2]);
+			}
+			break;
+		case "inc":
+		case "dec":
+			ins.type = parts[1].charAt(0);
+			ins.q = Integer.parseInt(parts[2]);
+			break;
+		case "conv":
+			ins.type = parts[1].charAt(0);
+			ins.type2 = parts[2].charAt(0);
+			break;
+		case ".data":
+			ins.type = parts[1].charAt(0);
+			ins.values = new int[parts.length - 2];
+			for(int i = 0; i < ins.values.length; i++) {
+				ins.values[i] = Integer.parseInt(parts[i + 2]);
+			}
+			break;
+		case "and":
+		case "or":
+		case "not":
+		case "retf":
+		case "retp":
+		case "hlt":
+			break;
+		default:
+			if(parts.length > 1) {
+				ins.type = parts[1].charAt(0);
+			}
+		}
+
+		return ins;
+	}
+
+	private int base(int p, int a) {
+		while(p > 0) {
+			a = store[a + 1];
+			p--;
+		}
+		return a;
+	}
+
+	/**
+	 * Called before every executed instruction
+	 *
+	 * @param pc
+	 *            : index of the instruction in program
+	 */
+	protected void step(int pc) {
+	}
+
+	/**
+	 * Run the program
+	 *
+	 * @param input
+	 *            : text read by 'in' instructions
+	 * @return everything written by 'out' instructions
+	 */
+	public String run(String input) {
+		this.input = input;
+		inputPos = 0;
+		output = new StringBuilder();
+		store = new int[storeSize];
+		sp = -1;
+		mp = 0;
+		ep = 0;
+		pc = 0;
+		steps = 0;
+		maxSp = -1;
+
+		while(pc < program.size()) {
+			if(++steps > maxSteps) {
+				throw new PMachineException("Step limit exceeded");
+			}
+
+			step(pc);
+			if(sp > maxSp) {
+				maxSp = sp;
+			}
+			Instruction ins = program.get(pc);
+			pc++;
+
+			switch(ins.opcode) {
+			case "ldc":
+				store[++sp] = ins.q;
+				break;
+			case ".data":
+				System.arraycopy(ins.values, 0, store, sp + 1,
+						ins.values.length);
+				sp += ins.values.length;
+				break;
+			case "lod":
+				sp++;
+				store[sp] = store[base(ins.p, mp) + ins.q];
+				break;
+			case "lda":
+				store[++sp] = base(ins.p, mp) + ins.q;
+				break;
+			case "str":
+				store[base(ins.p, mp) + ins.q] = store[sp--];
+				break;
+			case "ind":
+				store[sp] = store[store[sp]];
+				break;
+			case "sto":
+				store[store[sp - 1]] = store[sp];
+				sp -= 2;
+				break;
+			case "dpl":
+				store[sp + 1] = store[sp];
+				sp++;
+				break;
+			case "inc":
+				store[sp] += ins.q;
+				break;
+			case "dec":
+				store[sp] -= ins.q;
+				break;
+			case "add":
+				store[sp - 1] = store[sp - 1] + store[sp];
+				sp--;
+				break;
+			case "sub":
+				store[sp - 1] = store[sp - 1] - store[sp];
+				sp--;
+				break;
+			case "mul":
+				store[sp - 1] = store[sp - 1] * store[sp];
+				sp--;
+				break;
+			case "div":
+				if(store[sp] == 0) {
+					throw new PMachineException("Division by zero at "
+							+ ins.text);
+				}
+				store[sp - 1] = store[sp - 1] / store[sp];
+				sp--;
+				break;
+			case "neg":
+				store[sp] = -store[sp];
+				break;
+			case "and":
+				store[sp - 1] = (store[sp - 1] != 0 && store[sp] != 0) ? 1 : 0;
+				sp--;
+				break;
+			case "or":
+				store[sp - 1] = (store[sp - 1] != 0 || store[sp] != 0) ? 1 : 0;
+				sp--;
+				break;
+			case "not":
+				store[sp] = store[sp] == 0 ? 1 : 0;
+				break;
+			case "equ":
+				store[sp - 1] = store[sp - 1] == store[sp] ? 1 : 0;
+				sp--;
+				break;
+			case "neq":
+				store[sp - 1] = store[sp - 1] != store[sp] ? 1 : 0;
+				sp--;
+				break;
+			case "grt":
+				store[sp - 1] = store[sp - 1] > store[sp] ? 1 : 0;
+				sp--;
+				break;
+			case "geq":
+				store[sp - 1] = store[sp - 1] >= store[sp] ? 1 : 0;
+				sp--;
+				break;
+			case "les":
+				store[sp - 1] = store[sp - 1] < store[sp] ? 1 : 0;
+				sp--;
+				break;
+			case "leq":
+				store[sp - 1] = store[sp - 1] <= store[sp] ? 1 : 0;
+				sp--;
+				break;
+			case "conv":
+				if(ins.type2 == 'b') {
+					store[sp] = store[sp] != 0 ? 1 : 0;
+				}
+				break;
+			case "ujp":
+				pc = ins.target;
+				break;
+			case "fjp":
+				if(store[sp--] == 0) {
+					pc = ins.target;
+				}
+				break;
+			case "mst":
+				store[sp + 2] = base(ins.p, mp);
+				store[sp + 3] = mp;
+				store[sp + 4] = ep;
+				sp += 5;
+				break;
+			case "cup":
+				mp = sp - (ins.p + 4);
+				store[mp + 4] = pc;
+				pc = ins.target;
+				break;
+			case "ssp":
+				sp = mp + ins.p - 1;
+				break;
+			case "sep":
+				ep = sp + ins.p;
+				break;
+			case "retf":
+				sp = mp;
+				pc = store[mp + 4];
+				ep = store[mp + 3];
+				mp = store[mp + 2];
+				break;
+			case "retp":
+				sp = mp - 1;
+				pc = store[mp + 4];
+				ep = store[mp + 3];
+				mp = store[mp + 2];
+				break;
+			case "in":
+				store[++sp] = read(ins.type);
+				break;
+			case "out":
+				if(ins.type == 'c') {
+					output.append((char) store[sp]);
+				} else {
+					output.append(store[sp]);
+				}
+				sp--;
+				break;
+			case "hlt":
+				return output.toString();
+			default:
+				throw new PMachineException("Unsupported instruction: "
+						+ ins.text);
+			}
+		}
+
+		return output.toString();
+	}
+
+	private int read(char type) {
+		if(type == 'c') {
+			if(inputPos >= input.length()) {
+				return 0;
+			}
+			return input.charAt(inputPos++);
+		}
+
+		while(inputPos < input.length()
+				&& Character.isWhitespace(input.charAt(inputPos))) {
+			inputPos++;
+		}
+		int start = inputPos;
+		if(inputPos < input.length() && input.charAt(inputPos) == '-') {
+			inputPos++;
+		}
+		while(inputPos < input.length()
+				&& Character.isDigit(input.charAt(inputPos))) {
+			inputPos++;
+		}
+		if(start == inputPos) {
+			return 0;
+		}
+		return Integer.parseInt(input.substring(start, inputPos));
+	}
+
+	public int getMaxStackDepth() {
+		return maxSp + 1;
+	}
+
+	public long getSteps() {
+		return steps;
+	}
+}
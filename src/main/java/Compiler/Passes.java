@@ -0,0 +1,220 @@
+package Compiler;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import Compiler.SymbolTableVisitor.Symbol;
+import Compiler.SymbolTableVisitor.VarSymbol;
+
+/**
+ * @brief Helpers shared by the optimization passes
+ *
+ *        Passes that keep a value in the frame of a function do so in a
+ *        temporary: a declaration the pass puts in the tree, which gets a
+ *        position in the frame like any other local.
+ */
+public class Passes {
+
+	// Builtins without side effects, their calls can be moved or shared
+	private static final Set<String> pure = new HashSet<String>();
+	// Builtins that don't store in the memory of the program
+	private static final Set<String> readOnly = new HashSet<String>();
+
+	static {
+		pure.add("strlen");
+		pure.add("isdigit");
+		pure.add("chartoint");
+		pure.add("pow");
+
+		readOnly.addAll(pure);
+		readOnly.add("printf");
+		readOnly.add("print");
+		readOnly.add("strcmp");
+		readOnly.add("mod");
+		readOnly.add("atoi");
+	}
+
+	/**
+	 * Check if the call is to a builtin without side effects, whose result
+	 * only depends on its arguments and the memory they point to
+	 *
+	 * @param call
+	 * @return
+	 */
+	public static boolean isPure(Ast.FunctionCallNode call) {
+		return call.symbol.builtin && pure.contains(call.id);
+	}
+
+	/**
+	 * Check if the call is to a builtin that doesn't store in memory
+	 *
+	 * @param call
+	 * @return
+	 */
+	public static boolean isReadOnly(Ast.FunctionCallNode call) {
+		return call.symbol.builtin && readOnly.contains(call.id);
+	}
+
+	/**
+	 * Get the function the node is in
+	 *
+	 * @param node
+	 * @return null for nodes outside of a function
+	 */
+	public static Ast.FunctionDeclarationNode enclosingFunction(Ast.Node node) {
+		Ast.Node n = node.parent;
+		while(n != null && !(n instanceof Ast.FunctionDeclarationNode)) {
+			n = n.parent;
+		}
+
+		return (Ast.FunctionDeclarationNode) n;
+	}
+
+	/**
+	 * Check if the subtree takes the address of the variable
+	 *
+	 * @param node
+	 * @param symbol
+	 * @return
+	 */
+	public static boolean addressTaken(Ast.Node node, Symbol symbol) {
+		if(node == null) {
+			return false;
+		}
+
+		if(node instanceof Ast.ReferenceExpressionNode
+				&& node.children.get(0) instanceof Ast.IdNode
+				&& ((Ast.IdNode) node.children.get(0)).getSymbol() == symbol) {
+			return true;
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			if(addressTaken(node.children.get(i), symbol)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Check if the parent uses the value of the node, not its address
+	 *
+	 * @param node
+	 * @return
+	 */
+	public static boolean isValue(Ast.Node node) {
+		Ast.Node parent = node.parent;
+
+		if(parent instanceof Ast.ExprStatementNode
+				|| parent instanceof Ast.ReferenceExpressionNode
+				|| parent instanceof Ast.ArrayToPointerExpressionNode) {
+			return false;
+		}
+		if(parent instanceof Ast.SubscriptExpressionNode) {
+			return parent.children.get(1) == node;
+		}
+		// The initialization and step of a for are statements
+		if(parent instanceof Ast.ForStatementNode) {
+			return parent.children.get(1) == node;
+		}
+		if(parent instanceof Ast.UnaryOperatorNode) {
+			return ((Ast.UnaryOperatorNode) parent).operator.rule != Operator.Rule.INCREMENT;
+		}
+		if(parent instanceof Ast.BinaryOperatorNode) {
+			Operator.Rule rule = ((Ast.BinaryOperatorNode) parent).operator.rule;
+			return parent.children.get(1) == node
+					|| rule != Operator.Rule.ASSIGNMENT
+					&& rule != Operator.Rule.COMPOUND_ASSIGNMENT;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Check if a value of the type fits in a temporary
+	 *
+	 * @param type
+	 * @return
+	 */
+	public static boolean isScalar(Ast.TypeNode type) {
+		return type instanceof Ast.IntTypeNode
+				|| type instanceof Ast.CharTypeNode
+				|| type instanceof Ast.PointerTypeNode;
+	}
+
+	/**
+	 * Check if the variable is a local or parameter of the function itself,
+	 * not of an enclosing function
+	 *
+	 * @param symbol
+	 * @param function
+	 * @return
+	 */
+	public static boolean isLocal(VarSymbol symbol,
+			Ast.FunctionDeclarationNode function) {
+		if(symbol.declaration != null) {
+			return symbol.declaration.function == function;
+		}
+
+		for(int i = 0; i < function.getParams().children.size(); i++) {
+			if(((Ast.FormalParameterNode) function.getParams().children
+					.get(i)).symbol == symbol) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Create a temporary in the frame of a function
+	 *
+	 * @param id
+	 *            : name of the temporary, unique in the function
+	 * @param type
+	 *            : copied for the declaration
+	 * @param initializer
+	 * @param function
+	 * @param at
+	 *            : node the temporary is created for, gives the line and scope
+	 * @return the declaration, with its symbol
+	 */
+	public static Ast.DeclarationNode temporary(String id, Ast.TypeNode type,
+			Ast.ExpressionNode initializer,
+			Ast.FunctionDeclarationNode function, Ast.Node at) {
+		Ast.DeclarationNode temp = new Ast.DeclarationNode(id,
+				(Ast.TypeNode) type.deepCopy(), initializer);
+		temp.line = at.line;
+		temp.scope = at.scope;
+		temp.function = function;
+
+		VarSymbol symbol = new VarSymbol();
+		symbol.id = temp.id;
+		symbol.type = temp.getType();
+		symbol.scope = at.scope;
+		symbol.declaration = temp;
+		temp.symbol = symbol;
+
+		return temp;
+	}
+
+	/**
+	 * Create a use of a temporary
+	 *
+	 * @param symbol
+	 * @param function
+	 *            : function the use is in
+	 * @param line
+	 * @return
+	 */
+	public static Ast.IdNode use(VarSymbol symbol,
+			Ast.FunctionDeclarationNode function, int line) {
+		Ast.IdNode id = new Ast.IdNode(symbol.id);
+		id.line = line;
+		id.function = function;
+		id.setSymbol(symbol);
+
+		return id;
+	}
+}
@@ -0,0 +1,262 @@
+package Compiler;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Vector;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+
+/**
+ * @brief Runs P-code and counts the executed instructions
+ *
+ *        Instructions are counted per opcode, per function and per source
+ *        line. Every call is recorded with the number of instructions executed
+ *        until it returns, which gives the call graph. Recursive calls are
+ *        only counted once in the total of a function.
+ *
+ *        Usage: Profiler [options] program.c < input
+ */
+public class Profiler extends PMachine {
+
+	public Map<String, Long> opcodeCounts = new HashMap<String, Long>();
+	public Map<String, Long> functionCounts = new HashMap<String, Long>();
+	public Map<Integer, Long> lineCounts = new TreeMap<Integer, Long>();
+
+	// "caller -> callee"
+	public Map<String, Long> callCounts = new TreeMap<String, Long>();
+	public Map<String, Long> callTotals = new TreeMap<String, Long>();
+
+	// Instructions executed by a function and everything it calls
+	public Map<String, Long> functionTotals = new HashMap<String, Long>();
+
+	private int[] lines;
+	private String[] functions;
+	private long[] counts;
+
+	private Vector<String> callStack = new Vector<String>();
+	private Vector<Long> callStart = new Vector<Long>();
+	private Map<String, Integer> active = new HashMap<String, Integer>();
+
+	/**
+	 * @param code
+	 *            : instructions
+	 * @param map
+	 *            : source line and function of every instruction
+	 */
+	public Profiler(Vector<String> code, LineMap map) {
+		super(code);
+
+		// The P-machine skips the labels
+		lines = new int[program.size()];
+		functions = new String[program.size()];
+		int pc = 0;
+		for(int i = 0; i < code.size(); i++) {
+			String line = code.get(i).trim();
+			if(line.length() > 0 && !line.endsWith(":")) {
+				lines[pc] = map.getLine(i);
+				functions[pc] = map.getFunction(i);
+				pc += 1;
+			}
+		}
+	}
+
+	@Override
+	protected void step(int pc) {
+		counts[pc] += 1;
+
+		String opcode = program.get(pc).opcode;
+		if(opcode.equals("cup")) {
+			enter(functions[pc], program.get(pc).label);
+		} else if(opcode.equals("retf") || opcode.equals("retp")) {
+			leave();
+		}
+	}
+
+	private void enter(String caller, String callee) {
+		String edge = caller + " -> " + callee;
+		callStack.add(edge);
+		callStart.add(getSteps());
+		increment(callCounts, edge, 1);
+
+		Integer count = active.get(callee);
+		active.put(callee, count == null ? 1 : count + 1);
+		count = active.get(edge);
+		active.put(edge, count == null ? 1 : count + 1);
+	}
+
+	private void leave() {
+		if(callStack.size() == 0) {
+			return;
+		}
+
+		String edge = callStack.remove(callStack.size() - 1);
+		long total = getSteps() - callStart.remove(callStart.size() - 1);
+		String callee = edge.substring(edge.indexOf(" -> ") + 4);
+
+		// Only the outermost of recursive calls counts
+		active.put(callee, active.get(callee) - 1);
+		if(active.get(callee) == 0) {
+			increment(functionTotals, callee, total);
+		}
+		active.put(edge, active.get(edge) - 1);
+		if(active.get(edge) == 0) {
+			increment(callTotals, edge, total);
+		}
+	}
+
+	private static <K> void increment(Map<K, Long> map, K key, long value) {
+		Long count = map.get(key);
+		map.put(key, count == null ? value : count + value);
+	}
+
+	@Override
+	public String run(String input) {
+		counts = new long[program.size()];
+		opcodeCounts.clear();
+		functionCounts.clear();
+		lineCounts.clear();
+		callCounts.clear();
+		callTotals.clear();
+		functionTotals.clear();
+		callStack.clear();
+		callStart.clear();
+		active.clear();
+
+		String output = super.run(input);
+
+		// Calls that never returned, like the call to init
+		while(callStack.size() > 0) {
+			leave();
+		}
+
+		for(int pc = 0; pc < program.size(); pc++) {
+			if(counts[pc] > 0) {
+				increment(opcodeCounts, program.get(pc).opcode, counts[pc]);
+				increment(functionCounts, functions[pc], counts[pc]);
+				increment(lineCounts, lines[pc], counts[pc]);
+			}
+		}
+
+		return output;
+	}
+
+	private static <K> List<Map.Entry<K, Long>> sorted(Map<K, Long> map) {
+		List<Map.Entry<K, Long>> entries = new ArrayList<Map.Entry<K, Long>>(
+				map.entrySet());
+		Collections.sort(entries, new Comparator<Map.Entry<K, Long>>() {
+			@Override
+			public int compare(Map.Entry<K, Long> a, Map.Entry<K, Long> b) {
+				return b.getValue().compareTo(a.getValue());
+			}
+		});
+
+		return entries;
+	}
+
+	private String percentage(long count) {
+		return String.format("%7.2f", getSteps() == 0 ? 0.0 : 100.0 * count
+				/ getSteps());
+	}
+
+	/**
+	 * Print the flat profile and the call graph of the last run
+	 *
+	 * @param out
+	 */
+	public void printProfile(PrintStream out) {
+		out.println("Flat profile, " + getSteps() + " instructions executed");
+		out.println();
+		out.println(String.format("%7s %12s %12s %10s  %s", "self %", "self",
+				"total", "calls", "function"));
+		for(Map.Entry<String, Long> entry : sorted(functionCounts)) {
+			String function = entry.getKey();
+			long calls = 0;
+			for(Map.Entry<String, Long> call : callCounts.entrySet()) {
+				if(call.getKey().endsWith(" -> " + function)) {
+					calls += call.getValue();
+				}
+			}
+			Long total = functionTotals.get(function);
+
+			out.println(String.format("%s %12d %12s %10d  %s",
+					percentage(entry.getValue()), entry.getValue(),
+					total == null ? "-" : total.toString(), calls, function));
+		}
+
+		out.println();
+		out.println(String.format("%7s %12s  %s", "%", "count", "line"));
+		for(Map.Entry<Integer, Long> entry : sorted(lineCounts)) {
+			out.println(String.format("%s %12d  %s",
+					percentage(entry.getValue()), entry.getValue(),
+					entry.getKey() == 0 ? "-" : entry.getKey().toString()));
+		}
+
+		out.println();
+		out.println(String.format("%7s %12s  %s", "%", "count", "opcode"));
+		for(Map.Entry<String, Long> entry : sorted(opcodeCounts)) {
+			out.println(String.format("%s %12d  %s",
+					percentage(entry.getValue()), entry.getValue(),
+					entry.getKey()));
+		}
+
+		out.println();
+		out.println("Call graph");
+		out.println();
+		out.println(String.format("%10s %12s  %s", "calls", "total",
+				"caller -> callee"));
+		for(Map.Entry<String, Long> entry : sorted(callTotals)) {
+			out.println(String.format("%10d %12d  %s",
+					callCounts.get(entry.getKey()), entry.getValue(),
+					entry.getKey()));
+		}
+	}
+
+	public static void main(String[] args) {
+		Log.debug = false;
+		Log.exception = false;
+
+		Vector<String> options = new Vector<String>();
+		String file = null;
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].startsWith("-")) {
+				options.add(args[i]);
+			} else {
+				file = args[i];
+			}
+		}
+		if(file == null) {
+			System.err.println("Usage: Profiler [options] program.c < input");
+			System.exit(1);
+		}
+		App.parseArguments(options.toArray(new String[options.size()]));
+
+		try {
+			PrintStream discard = new PrintStream(new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+			});
+			CodeGenVisitor code = App.compile(new ANTLRInputStream(
+					new FileInputStream(file)), discard, new Metrics());
+
+			Profiler profiler = new Profiler(code.getInstructions(),
+					code.getLineMap());
+			System.out.print(profiler.run(new String(App.readAll(System.in),
+					"UTF-8")));
+			System.out.flush();
+			profiler.printProfile(System.err);
+		} catch(IOException e) {
+			System.err.println("Could not read " + file);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,314 @@
+package Compiler;
+
+import java.util.Vector;
+
+import Compiler.SymbolTableVisitor.Symbol;
+import Compiler.SymbolTableVisitor.VarSymbol;
+
+/**
+ * @brief Replaces array subscripts in counted for loops by running pointers
+ *
+ *        In 'for(...; ...; i++)' every a[i] and a[i + c] on an array a gets a
+ *        pointer that is set to its address after the initialization and
+ *        moved along with i after the step, so the subscript becomes a load
+ *        through the pointer instead of computing base + index every time.
+ *
+ *        The step must be i++, i--, i += c or i -= c with a constant c, and i
+ *        a local int of the function that is only changed by the step: not
+ *        assigned in the loop, its address never taken and no nested
+ *        function, which could change it, called in the loop. A pointer is
+ *        only added for a subscript that is evaluated in every iteration or
+ *        appears at least twice, otherwise moving it costs more than it
+ *        saves.
+ */
+public class StrengthReduction extends Visitor {
+
+	public static boolean report = false;
+
+	public Vector<String> reduced = new Vector<String>();
+
+	private int pointerCounter = 0;
+
+	/**
+	 * @brief Subscripts of one array with the same offset from i
+	 */
+	private static class Group {
+		public VarSymbol array;
+		public int offset;
+		public Vector<Ast.SubscriptExpressionNode> subscripts = new Vector<Ast.SubscriptExpressionNode>();
+		public boolean everyIteration = false;
+	}
+
+	@Override
+	public void visit(Ast.FileNode node) {
+		visitChildren(node);
+
+		if(report) {
+			for(int i = 0; i < reduced.size(); i++) {
+				System.err.println("[STRENGTH] " + reduced.get(i));
+			}
+			System.err.println("[STRENGTH] " + reduced.size()
+					+ " pointer(s) added");
+		}
+	}
+
+	@Override
+	public void visit(Ast.FunctionDeclarationNode node) {
+		// forward declaration
+		if(node.children.get(2) == null) {
+			return;
+		}
+
+		visitChildren(node);
+	}
+
+	@Override
+	public void visit(Ast.ForStatementNode node) {
+		visitChildren(node);
+
+		Ast.FunctionDeclarationNode function = Passes.enclosingFunction(node);
+		Ast.IdNode induction = inductionVariable(node.children.get(2));
+		if(function == null || induction == null) {
+			return;
+		}
+
+		VarSymbol symbol = (VarSymbol) induction.getSymbol();
+		if(symbol.declaration == null
+				|| symbol.declaration.function != function
+				|| !(symbol.type instanceof Ast.IntTypeNode)
+				|| Passes.addressTaken(function.getBlock(), symbol)
+				|| changes(node.getCondition(), symbol)
+				|| changes(node.getBody(), symbol)) {
+			return;
+		}
+
+		Vector<Group> groups = new Vector<Group>();
+		collect(node.getCondition(), symbol, true, groups);
+		collect(node.getBody(), symbol, true, groups);
+
+		for(int g = 0; g < groups.size(); g++) {
+			Group group = groups.get(g);
+			if(group.everyIteration || group.subscripts.size() > 1) {
+				reduce(node, function, group);
+			}
+		}
+	}
+
+	/**
+	 * Replace the subscripts of a group by a pointer
+	 */
+	private void reduce(Ast.ForStatementNode loop,
+			Ast.FunctionDeclarationNode function, Group group) {
+		Ast.SubscriptExpressionNode first = group.subscripts.get(0);
+		Ast.TypeNode element = first.getType();
+
+		Ast.PointerTypeNode type = new Ast.PointerTypeNode();
+		type.addChild(0, element.deepCopy());
+
+		// The pointer starts at the address of the first subscript
+		Ast.ReferenceExpressionNode address = new Ast.ReferenceExpressionNode(
+				(Ast.ExpressionNode) first.deepCopy());
+		address.setType(type);
+		address.line = first.line;
+
+		Ast.DeclarationNode pointer = Passes.temporary("stride"
+				+ pointerCounter, type, address, function, loop);
+		pointerCounter += 1;
+		VarSymbol symbol = (VarSymbol) pointer.symbol;
+
+		loop.addPointer(pointer, stride(loop.children.get(2)));
+
+		for(int i = 0; i < group.subscripts.size(); i++) {
+			Ast.SubscriptExpressionNode subscript = group.subscripts.get(i);
+
+			Ast.DereferenceExpressionNode load = new Ast.DereferenceExpressionNode(
+					Passes.use(symbol, function, subscript.line));
+			load.line = subscript.line;
+			load.setType(subscript.getType());
+
+			subscript.parent.replaceNode(subscript, load);
+			load.parent = subscript.parent;
+		}
+
+		reduced.add("line " + first.line + ": " + group.subscripts.size()
+				+ " subscript(s) of '" + group.array.id
+				+ "' use a pointer in '" + function.id + "'");
+	}
+
+	/**
+	 * Find the variable of a step i++, i--, i += c or i -= c
+	 *
+	 * @param step
+	 * @return null if the step has another form
+	 */
+	private static Ast.IdNode inductionVariable(Ast.Node step) {
+		Ast.Node target = null;
+
+		if(step instanceof Ast.UnaryOperatorNode
+				&& ((Ast.UnaryOperatorNode) step).operator.rule == Operator.Rule.INCREMENT) {
+			target = ((Ast.UnaryOperatorNode) step).getExpression();
+		} else if(step instanceof Ast.BinaryOperatorNode) {
+			Ast.BinaryOperatorNode binary = (Ast.BinaryOperatorNode) step;
+			if((binary.operator == Operator.ADD_ASSIGN || binary.operator == Operator.SUBTRACT_ASSIGN)
+					&& binary.getRightChild() instanceof Ast.IntNode) {
+				target = binary.getLeftChild();
+			}
+		}
+
+		if(target instanceof Ast.IdNode
+				&& ((Ast.IdNode) target).getSymbol() instanceof VarSymbol) {
+			return (Ast.IdNode) target;
+		}
+
+		return null;
+	}
+
+	/**
+	 * @return how much i changes in every step
+	 */
+	private static int stride(Ast.Node step) {
+		if(step instanceof Ast.UnaryOperatorNode) {
+			return ((Ast.UnaryOperatorNode) step).operator == Operator.INCREMENT ? 1
+					: -1;
+		}
+
+		Ast.BinaryOperatorNode binary = (Ast.BinaryOperatorNode) step;
+		int value = ((Ast.IntNode) binary.getRightChild()).value;
+
+		return binary.operator == Operator.ADD_ASSIGN ? value : -value;
+	}
+
+	private static boolean isVariable(Ast.Node node, Symbol symbol) {
+		return node instanceof Ast.IdNode
+				&& ((Ast.IdNode) node).getSymbol() == symbol;
+	}
+
+	/**
+	 * Check if the subtree assigns the variable or calls a nested function
+	 */
+	private static boolean changes(Ast.Node node, Symbol symbol) {
+		if(node == null) {
+			return false;
+		}
+
+		if(node instanceof Ast.BinaryOperatorNode) {
+			Ast.BinaryOperatorNode binary = (Ast.BinaryOperatorNode) node;
+			if((binary.operator.rule == Operator.Rule.ASSIGNMENT || binary.operator.rule == Operator.Rule.COMPOUND_ASSIGNMENT)
+					&& isVariable(binary.getLeftChild(), symbol)) {
+				return true;
+			}
+		} else if(node instanceof Ast.UnaryOperatorNode) {
+			Ast.UnaryOperatorNode unary = (Ast.UnaryOperatorNode) node;
+			if(unary.operator.rule == Operator.Rule.INCREMENT
+					&& isVariable(unary.getExpression(), symbol)) {
+				return true;
+			}
+		} else if(node instanceof Ast.FunctionCallNode) {
+			Ast.FunctionCallNode call = (Ast.FunctionCallNode) node;
+			if(call.symbol.declaration != null
+					&& call.symbol.declaration.owner != null) {
+				return true;
+			}
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			if(changes(node.children.get(i), symbol)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Get the offset of a subscript a[i], a[i + c], a[c + i] or a[i - c]
+	 *
+	 * @return null if the index has another form
+	 */
+	private static Integer offset(Ast.ExpressionNode index, Symbol symbol) {
+		if(isVariable(index, symbol)) {
+			return 0;
+		}
+
+		if(!(index instanceof Ast.BinaryOperatorNode)) {
+			return null;
+		}
+
+		Ast.BinaryOperatorNode binary = (Ast.BinaryOperatorNode) index;
+		Ast.ExpressionNode left = binary.getLeftChild();
+		Ast.ExpressionNode right = binary.getRightChild();
+		if(binary.operator == Operator.ADD) {
+			if(isVariable(left, symbol) && right instanceof Ast.IntNode) {
+				return ((Ast.IntNode) right).value;
+			}
+			if(isVariable(right, symbol) && left instanceof Ast.IntNode) {
+				return ((Ast.IntNode) left).value;
+			}
+		} else if(binary.operator == Operator.SUBTRACT) {
+			if(isVariable(left, symbol) && right instanceof Ast.IntNode) {
+				return -((Ast.IntNode) right).value;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Group the subscripts indexed by the variable
+	 *
+	 * @param everyIteration
+	 *            whether the subtree is evaluated in every iteration
+	 */
+	private static void collect(Ast.Node node, Symbol symbol,
+			boolean everyIteration, Vector<Group> groups) {
+		if(node == null || node instanceof Ast.FunctionDeclarationNode) {
+			return;
+		}
+
+		if(node instanceof Ast.SubscriptExpressionNode) {
+			Ast.SubscriptExpressionNode subscript = (Ast.SubscriptExpressionNode) node;
+			Ast.ExpressionNode array = subscript.getArray();
+			Integer offset = offset(subscript.getIndex(), symbol);
+			if(offset != null && array instanceof Ast.IdNode
+					&& array.getType() instanceof Ast.StaticArrayTypeNode) {
+				add(groups, (VarSymbol) ((Ast.IdNode) array).getSymbol(),
+						offset, subscript, everyIteration);
+				return;
+			}
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			// Only the condition of an if is always evaluated, only the left
+			// side of && and ||
+			boolean always = everyIteration;
+			if(node instanceof Ast.IfStatementNode && i > 0
+					|| node instanceof Ast.BinaryOperatorNode
+					&& ((Ast.BinaryOperatorNode) node).operator.rule == Operator.Rule.LOGICAL
+					&& i > 0) {
+				always = false;
+			}
+			collect(node.children.get(i), symbol, always, groups);
+		}
+	}
+
+	private static void add(Vector<Group> groups, VarSymbol array,
+			int offset, Ast.SubscriptExpressionNode subscript,
+			boolean everyIteration) {
+		Group group = null;
+		for(int g = 0; g < groups.size() && group == null; g++) {
+			if(groups.get(g).array == array && groups.get(g).offset == offset) {
+				group = groups.get(g);
+			}
+		}
+
+		if(group == null) {
+			group = new Group();
+			group.array = array;
+			group.offset = offset;
+			groups.add(group);
+		}
+
+		group.subscripts.add(subscript);
+		group.everyIteration |= everyIteration;
+	}
+}
@@ -1,8 +1,10 @@
 package Compiler;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Stack;
 import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.Vector;
 
 import Compiler.Ast.FunctionDeclarationNode;
@@ -14,9 +16,12 @@ import Compiler.Ast.StaticArrayTypeNode;
 public class SymbolTableVisitor extends Visitor {
 	private int functionDeclCounter = 0;
 	private int scope = 0;
-	public int stringCounter = 0;
+	public int stringCounter = 0; // size of the string pool
+	public int stringLiteralSize = 0; // size of all string literals
+	public int symbolCount = 0;
 	
 	private Ast.FileNode file;
+	private Vector<Ast.StringNode> strings = new Vector<Ast.StringNode>();
 
 	/**
 	 * Generalize two types
@@ -265,8 +270,99 @@ public class SymbolTableVisitor extends Visitor {
 		file = node;
 
 		enterNewScope();
-		visitChildren(node);
+		visitStatements(node);
 		leaveScope();
+
+		poolStrings();
+	}
+
+	/**
+	 * Pool the string literals that are still in the tree again, the
+	 * optimizations may have removed some
+	 *
+	 * @param node
+	 */
+	public void poolStrings(Ast.FileNode node) {
+		strings.clear();
+		collectStrings(node);
+
+		stringCounter = 0;
+		stringLiteralSize = 0;
+		node.stringLiterals.clear();
+		poolStrings();
+	}
+
+	private void collectStrings(Ast.Node node) {
+		if(node instanceof Ast.StringNode) {
+			strings.add((Ast.StringNode) node);
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			if(node.children.get(i) != null) {
+				collectStrings(node.children.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Give every string literal its position in the string pool
+	 *
+	 * Equal literals are stored once and a literal that is the end of another
+	 * one points into it, so "d\n" uses the storage of "%d\n".
+	 */
+	private void poolStrings() {
+		// In reverse, a string sorts right after the strings it is the end of
+		TreeSet<String> reversed = new TreeSet<String>();
+		for(int i = 0; i < strings.size(); i++) {
+			reversed.add(new StringBuilder(strings.get(i).value).reverse()
+					.toString());
+		}
+
+		Map<String, Integer> positions = new HashMap<String, Integer>();
+		String owner = null;
+		int position = 0;
+		for(String string : reversed.descendingSet()) {
+			if(owner == null || !owner.startsWith(string)) {
+				owner = string;
+				position = stringCounter;
+				stringCounter += string.length() + 1;
+				file.stringLiterals.add(new StringBuilder(string).reverse()
+						.toString());
+			}
+			positions.put(new StringBuilder(string).reverse().toString(),
+					position + owner.length() - string.length());
+		}
+
+		for(int i = 0; i < strings.size(); i++) {
+			strings.get(i).stringPosition = positions.get(strings.get(i).value);
+			stringLiteralSize += strings.get(i).value.length() + 1;
+		}
+	}
+
+	/**
+	 * Visit a statement or declaration, when it has an error the analysis goes
+	 * on with the next one
+	 *
+	 * @param node
+	 */
+	private void visitRecovering(Ast.Node node) {
+		int depth = symbolTableStack.size();
+		try {
+			visit(node);
+		} catch(Log.RecoverException e) {
+			symbolTableStack.setSize(depth);
+		}
+	}
+
+	/**
+	 * Visit the children of a file or block one by one
+	 *
+	 * @param node
+	 */
+	private void visitStatements(Ast.Node node) {
+		for(int i = 0; i < node.children.size(); i++) {
+			visitRecovering(node.children.get(i));
+		}
 	}
 
 	/**
@@ -284,33 +380,15 @@ public class SymbolTableVisitor extends Visitor {
 					+ symbolTableStack.peek().getSymbol(node.id).type.line
 					+ ")", node.line);
 		}
-		
-		
-		
-		visitChildren(node);
 
-		VarSymbol symbol = new VarSymbol();
-		symbol.declaration = node;
-		symbol.scope = node.scope;
-		symbol.id = node.id;
-		Assert.Assert(node.children.get(0) instanceof Ast.TypeNode,
-				"Expected TypeNode");
-		symbol.type = (Ast.TypeNode) node.children.get(0);
-		symbolTableStack.peek().addSymbol(symbol);
-
-		node.symbol = symbol;
-
-		Ast.Node n = node;
-		while(n.parent != null) {
-			n = n.parent;
-
-			if(n instanceof FunctionDeclarationNode) {
-				break;
-			}
-		}
-		if(n instanceof FunctionDeclarationNode) {
-			node.function = (FunctionDeclarationNode) n;
+		try {
+			visitChildren(node);
+		} catch(Log.RecoverException e) {
+			// Still declare it, so every use isn't an error too
+			declare(node);
+			throw e;
 		}
+		declare(node);
 
 		handleCastExpression(node);
 		
@@ -349,6 +427,37 @@ public class SymbolTableVisitor extends Visitor {
 		}
 	}
 
+	/**
+	 * Add the symbol of a variable declaration
+	 *
+	 * @param node
+	 */
+	private void declare(Ast.DeclarationNode node) {
+		VarSymbol symbol = new VarSymbol();
+		symbol.declaration = node;
+		symbol.scope = node.scope;
+		symbol.id = node.id;
+		Assert.Assert(node.children.get(0) instanceof Ast.TypeNode,
+				"Expected TypeNode");
+		symbol.type = (Ast.TypeNode) node.children.get(0);
+		symbolTableStack.peek().addSymbol(symbol);
+		symbolCount += 1;
+
+		node.symbol = symbol;
+
+		Ast.Node n = node;
+		while(n.parent != null) {
+			n = n.parent;
+
+			if(n instanceof FunctionDeclarationNode) {
+				break;
+			}
+		}
+		if(n instanceof FunctionDeclarationNode) {
+			node.function = (FunctionDeclarationNode) n;
+		}
+	}
+
 	/**
 	 * Visit FunctionCallNode
 	 *
@@ -480,9 +589,8 @@ public class SymbolTableVisitor extends Visitor {
 	public void visit(Ast.StringNode node) {
 		visitChildren(node);
 		
-		node.stringPosition = stringCounter;
-		stringCounter += node.value.length() + 1;
-		file.stringLiterals.add(node.value);
+		// The position is known when all strings are pooled
+		strings.add(node);
 
 		handleCastExpression(node);
 	}
@@ -529,7 +637,7 @@ public class SymbolTableVisitor extends Visitor {
 	@Override
 	public void visit(Ast.BlockStatementNode node) {
 		enterNewScope();
-		visitChildren(node);
+		visitStatements(node);
 		leaveScope();
 	}
 
@@ -544,7 +652,7 @@ public class SymbolTableVisitor extends Visitor {
 		if(newScope) {
 			visit(node);
 		} else {
-			visitChildren(node);
+			visitStatements(node);
 		}
 	}
 
@@ -649,6 +757,7 @@ public class SymbolTableVisitor extends Visitor {
 		}
 
 		symbolTableStack.peek().addSymbol(symbol);
+		symbolCount += 1;
 
 		enterNewScope();
 
@@ -657,7 +766,7 @@ public class SymbolTableVisitor extends Visitor {
 			Assert.Assert(
 					node.children.get(1).children.get(i) instanceof Ast.FormalParameterNode,
 					"Expected FormalParameterNode");
-			visit(node.children.get(1).children.get(i));
+			visitRecovering(node.children.get(1).children.get(i));
 		}
 
 		// visit block
@@ -698,6 +807,7 @@ public class SymbolTableVisitor extends Visitor {
 				"Expected TypeNode");
 		symbol.type = (Ast.TypeNode) node.children.get(0);
 		symbolTableStack.peek().addSymbol(symbol);
+		symbolCount += 1;
 
 		node.symbol = symbol;
 
@@ -715,9 +825,8 @@ public class SymbolTableVisitor extends Visitor {
 
 		visitChildren(node);
 
-		switch(node.operator) {
-		case "++":
-		case "--":
+		switch(node.operator.rule) {
+		case INCREMENT:
 			if(!(node.getExpression().getType() instanceof Ast.IntTypeNode)
 					&& !(node.getExpression().getType() instanceof Ast.CharTypeNode)
 					&& !(node.getExpression().getType() instanceof Ast.PointerTypeNode)) {
@@ -733,7 +842,7 @@ public class SymbolTableVisitor extends Visitor {
 			
 			node.setType(node.getExpression().getType());
 			break;
-		case "!":
+		case NOT:
 			if(!(node.getExpression().getType() instanceof Ast.IntTypeNode)
 					&& !(node.getExpression().getType() instanceof Ast.CharTypeNode)) {
 
@@ -746,7 +855,7 @@ public class SymbolTableVisitor extends Visitor {
 			node.setType(new Ast.IntTypeNode());
 			break;
 			
-		case "-":
+		case NEGATE:
 			if(!(node.getExpression().getType() instanceof Ast.IntTypeNode)
 					&& !(node.getExpression().getType() instanceof Ast.CharTypeNode)) {
 
@@ -758,6 +867,19 @@ public class SymbolTableVisitor extends Visitor {
 			node.setType(node.getExpression().getType());
 			break;
 
+		case COMPLEMENT:
+			if(!(node.getExpression().getType() instanceof Ast.IntTypeNode)
+					&& !(node.getExpression().getType() instanceof Ast.CharTypeNode)) {
+
+				Log.fatal("Operator '" + node.operator + "' not supported for type '"
+						+ node.getExpression().getType().getStringRepresentation()
+						+ "'", node.line);
+			}
+
+			convert(node.getExpression(), new Ast.IntTypeNode());
+			node.setType(new Ast.IntTypeNode());
+			break;
+
 		default:
 			Log.fatal("Unary operator not implemented: " + node.operator,
 					node.line);
@@ -920,8 +1042,8 @@ public class SymbolTableVisitor extends Visitor {
 
 		Ast.TypeNode resultType = null;
 
-		switch(node.operator) {
-		case "=":
+		switch(node.operator.rule) {
+		case ASSIGNMENT:
 			if(node.getLeftChild().getType().constant) {
 				Log.fatal("Can't assign to constant variable", node.line);
 			}
@@ -932,25 +1054,41 @@ public class SymbolTableVisitor extends Visitor {
 			convert(node.getRightChild(), node.getLeftChild().getType());
 			resultType = node.getLeftChild().getType();
 			break;
-		case "==":
-		case "!=":
-		case ">":
-		case ">=":
-		case "<":
-		case "<=":
+		case COMPOUND_ASSIGNMENT:
+			if(node.getLeftChild().getType().constant) {
+				Log.fatal("Can't assign to constant variable", node.line);
+			}
+
+			// Integers, or moving a pointer with += and -=
+			Operator operation = node.operator.operation;
+			Ast.TypeNode left = node.getLeftChild().getType();
+			if(!isInteger(node.getRightChild().getType())
+					|| !(isInteger(left) || left instanceof Ast.PointerTypeNode
+							&& (operation == Operator.ADD || operation == Operator.SUBTRACT))) {
+				Log.fatal("Operator '"
+						+ node.operator
+						+ "' not supported for types '"
+						+ left.getStringRepresentation()
+						+ "', '"
+						+ node.getRightChild().getType()
+								.getStringRepresentation() + "'", node.line);
+			}
+
+			if(operation.rule == Operator.Rule.INTEGER) {
+				convert(node.getRightChild(), new Ast.IntTypeNode());
+			}
+			resultType = left;
+			break;
+		case COMPARISON:
 			consistent(node.getLeftChild(), node.getRightChild());
 			resultType = new Ast.IntTypeNode();
 			break;
-		case "&&":
-		case "||":
+		case LOGICAL:
 			convert(node.getLeftChild(), new Ast.IntTypeNode());
             convert(node.getRightChild(), new Ast.IntTypeNode());
 			resultType = new Ast.IntTypeNode();
 			break;
-		case "+":
-		case "-":
-		case "/":
-		case "*":
+		case ARITHMETIC:
 			resultType = consistent(node.getLeftChild(), node.getRightChild());
 			if(resultType == null) {
 				Log.fatal("Operator '"
@@ -964,6 +1102,23 @@ public class SymbolTableVisitor extends Visitor {
 			}
 
 			break;
+		case INTEGER:
+			if(!isInteger(node.getLeftChild().getType())
+					|| !isInteger(node.getRightChild().getType())) {
+				Log.fatal("Operator '"
+						+ node.operator
+						+ "' not supported for types '"
+						+ node.getLeftChild().getType()
+								.getStringRepresentation()
+						+ "', '"
+						+ node.getRightChild().getType()
+								.getStringRepresentation() + "'", node.line);
+			}
+
+			convert(node.getLeftChild(), new Ast.IntTypeNode());
+			convert(node.getRightChild(), new Ast.IntTypeNode());
+			resultType = new Ast.IntTypeNode();
+			break;
 
 		default:
 			Log.fatal("Binary operator not implemented: " + node.operator,
@@ -974,6 +1129,11 @@ public class SymbolTableVisitor extends Visitor {
 		handleCastExpression(node);
 	}
 
+	private static boolean isInteger(Ast.TypeNode type) {
+		return type instanceof Ast.IntTypeNode
+				|| type instanceof Ast.CharTypeNode;
+	}
+
 	private Stack<SymbolTable> symbolTableStack = new Stack<SymbolTable>();
 
 	private void enterNewScope() {
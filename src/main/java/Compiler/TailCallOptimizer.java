@@ -0,0 +1,113 @@
+package Compiler;
+
+import java.util.Vector;
+
+import Compiler.SymbolTableVisitor.VarSymbol;
+
+/**
+ * @brief Turns self recursive tail calls into jumps
+ *
+ *        A 'return f(...)' inside f stores the arguments in the parameters of
+ *        the current frame and jumps back to the start of f instead of
+ *        allocating a new frame.
+ *
+ *        This is only done when no address of a local variable or parameter
+ *        is taken in f, because the new call could still use it.
+ */
+public class TailCallOptimizer extends Visitor {
+
+	public static boolean report = false;
+
+	public Vector<String> tailCalls = new Vector<String>();
+
+	@Override
+	public void visit(Ast.FileNode node) {
+		visitChildren(node);
+
+		if(report) {
+			for(int i = 0; i < tailCalls.size(); i++) {
+				System.err.println("[TAILCALL] " + tailCalls.get(i));
+			}
+		}
+	}
+
+	@Override
+	public void visit(Ast.FunctionDeclarationNode node) {
+		// forward declaration
+		if(node.children.get(2) == null) {
+			return;
+		}
+
+		visitChildren(node);
+	}
+
+	@Override
+	public void visit(Ast.ReturnStatementNode node) {
+		visitChildren(node);
+
+		if(!(node.getExpression() instanceof Ast.FunctionCallNode)) {
+			return;
+		}
+
+		Ast.FunctionCallNode call = (Ast.FunctionCallNode) node.getExpression();
+		if(call.owner == null || call.symbol.builtin
+				|| !call.symbol.label.equals(call.owner.symbol.label)) {
+			return;
+		}
+
+		if(addressTaken(call.owner.getBlock())) {
+			return;
+		}
+
+		node.tailCall = true;
+		tailCalls.add("line " + node.line + ": tail call in '" + call.id
+				+ "'");
+	}
+
+	/**
+	 * Check if the address of a variable in the frame of the function can be
+	 * taken in this subtree
+	 *
+	 * @param node
+	 * @return
+	 */
+	private static boolean addressTaken(Ast.Node node) {
+		if(node instanceof Ast.ReferenceExpressionNode
+				|| node instanceof Ast.ArrayToPointerExpressionNode) {
+			if(!isGlobal((Ast.ExpressionNode) node.children.get(0))) {
+				return true;
+			}
+		}
+
+		for(int i = 0; i < node.children.size(); i++) {
+			if(node.children.get(i) != null
+					&& addressTaken(node.children.get(i))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Check if the lvalue is stored outside of the frames of the functions
+	 *
+	 * @param e
+	 * @return
+	 */
+	private static boolean isGlobal(Ast.ExpressionNode e) {
+		if(e instanceof Ast.IdNode) {
+			Ast.IdNode id = (Ast.IdNode) e;
+			return id.getSymbol() instanceof VarSymbol
+					&& ((VarSymbol) id.getSymbol()).declaration != null
+					&& ((VarSymbol) id.getSymbol()).declaration.function == null;
+		}
+
+		if(e instanceof Ast.SubscriptExpressionNode) {
+			return isGlobal(((Ast.SubscriptExpressionNode) e).getArray());
+		}
+
+		// Points to wherever the pointer points to
+		return e instanceof Ast.DereferenceExpressionNode;
+	}
+}
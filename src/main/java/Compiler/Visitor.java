@@ -82,6 +82,10 @@ public abstract class Visitor {
 		visitChildren(node);
 	}
 
+	public void visit(Ast.InlinedCallNode node) {
+		visitChildren(node);
+	}
+
 	public void visit(Ast.BlockStatementNode node) {
 		visitChildren(node);
 	}
@@ -0,0 +1,204 @@
+package Compiler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+
+/**
+ * @brief Compiles the .c files in a directory every time they change
+ *
+ *        The code of file.c is written to file.p. Every file keeps its own
+ *        FunctionCache, so after an edit only the changed declarations are
+ *        generated again. Errors and warnings are written to the log together
+ *        with the time every compilation took.
+ *
+ *        Usage: Watcher [options] directory
+ */
+public class Watcher {
+
+	// Editors write a file in several steps, wait until it's quiet
+	public static long settleTime = 50;
+
+	public PrintStream log = System.err;
+
+	private Path directory;
+	private WatchService service;
+	private Map<Path, FunctionCache> caches = new HashMap<Path, FunctionCache>();
+
+	/**
+	 * @param directory
+	 * @throws IOException
+	 */
+	public Watcher(Path directory) throws IOException {
+		this.directory = directory;
+		service = FileSystems.getDefault().newWatchService();
+		directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_MODIFY);
+	}
+
+	private static boolean isSource(Path file) {
+		return file.getFileName().toString().endsWith(".c");
+	}
+
+	private static Path output(Path source) {
+		String name = source.getFileName().toString();
+		return source.resolveSibling(name.substring(0, name.length() - 2)
+				+ ".p");
+	}
+
+	/**
+	 * Compile all .c files in the directory
+	 *
+	 * @throws IOException
+	 */
+	public void compileAll() throws IOException {
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+				"*.c")) {
+			for(Path file : files) {
+				compile(file);
+			}
+		}
+	}
+
+	/**
+	 * Compile a file and write its code next to it
+	 *
+	 * @param source
+	 * @return false if the file doesn't compile
+	 */
+	public boolean compile(Path source) {
+		FunctionCache cache = caches.get(source);
+		if(cache == null) {
+			cache = new FunctionCache();
+			caches.put(source, cache);
+		}
+
+		long start = System.nanoTime();
+		ByteArrayOutputStream code = new ByteArrayOutputStream();
+		Log.setOut(log);
+		Log.setExit(false);
+		try {
+			ANTLRInputStream input = new ANTLRInputStream(
+					new ByteArrayInputStream(Files.readAllBytes(source)));
+			App.compile(input, new PrintStream(code), new Metrics(), cache);
+			Files.write(output(source), code.toByteArray());
+		} catch(Log.FatalException e) {
+			log.println("[WATCH] " + source.getFileName() + " failed");
+			return false;
+		} catch(IOException e) {
+			log.println("[WATCH] " + source.getFileName() + ": " + e);
+			return false;
+		} finally {
+			Log.setOut(System.out);
+			Log.setExit(true);
+		}
+
+		long time = System.nanoTime() - start;
+		log.println("[WATCH] " + source.getFileName() + " compiled in "
+				+ TimeUnit.NANOSECONDS.toMillis(time) + " ms (" + cache.hits
+				+ " declaration(s) cached, " + cache.misses + " generated)");
+		return true;
+	}
+
+	/**
+	 * Get the changed .c files of a watch key
+	 */
+	private static void changed(WatchKey key, Path directory, Set<Path> files) {
+		for(WatchEvent<?> event : key.pollEvents()) {
+			if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				continue;
+			}
+
+			Path file = directory.resolve((Path) event.context());
+			if(isSource(file)) {
+				files.add(file);
+			}
+		}
+		key.reset();
+	}
+
+	/**
+	 * Compile changed files until stop is called
+	 *
+	 * @throws InterruptedException
+	 */
+	public void run() throws InterruptedException {
+		try {
+			while(true) {
+				Set<Path> files = new LinkedHashSet<Path>();
+				changed(service.take(), directory, files);
+
+				WatchKey key;
+				while((key = service.poll(settleTime, TimeUnit.MILLISECONDS)) != null) {
+					changed(key, directory, files);
+				}
+
+				for(Path file : files) {
+					if(Files.exists(file)) {
+						compile(file);
+					}
+				}
+			}
+		} catch(ClosedWatchServiceException e) {
+			// Stopped
+		}
+	}
+
+	/**
+	 * Stop watching, run returns
+	 *
+	 * @throws IOException
+	 */
+	public void stop() throws IOException {
+		service.close();
+	}
+
+	public static void main(String[] args) {
+		Log.debug = false;
+		Log.exception = false;
+
+		Vector<String> options = new Vector<String>();
+		String directory = null;
+		for(int i = 0; i < args.length; i++) {
+			if(args[i].startsWith("-")) {
+				options.add(args[i]);
+			} else {
+				directory = args[i];
+			}
+		}
+		if(directory == null) {
+			System.err.println("Usage: Watcher [options] directory");
+			System.exit(1);
+		}
+		App.parseArguments(options.toArray(new String[options.size()]));
+
+		try {
+			Watcher watcher = new Watcher(Paths.get(directory));
+			watcher.compileAll();
+			watcher.log.println("[WATCH] watching " + directory);
+			watcher.run();
+		} catch(IOException | InterruptedException e) {
+			System.err.println("Could not watch " + directory + ": " + e);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package Compiler;
+
+import java.util.Random;
+
+/**
+ * @brief Generates large valid programs to test the compiler at scale
+ *
+ *        Every knob scales one part of the program: the number of functions
+ *        and globals, how deep expressions are nested, the number of functions
+ *        nested in each function, the size of initializer lists and the number
+ *        of printf calls per function. The same seed gives the same program.
+ *
+ *        Usage: WorkloadGenerator [-functions=N] [-globals=N] [-depth=N]
+ *        [-nested=N] [-initializer=N] [-printfs=N] [-seed=N] > program.c
+ */
+public class WorkloadGenerator {
+
+	public int functions = 100;
+	public int globals = 10;
+	public int depth = 8;
+	public int nested = 1;
+	public int initializer = 16;
+	public int printfs = 2;
+	public long seed = 0;
+
+	private Random random;
+	private StringBuilder source;
+
+	/**
+	 * Generate the program
+	 *
+	 * @return C source
+	 */
+	public String generate() {
+		random = new Random(seed);
+		source = new StringBuilder();
+
+		source.append("#include <stdio.h>\n\n");
+
+		for(int g = 0; g < globals; g++) {
+			source.append("int g" + g + " = " + random.nextInt(100) + ";\n");
+		}
+		if(initializer > 0) {
+			source.append("int table[" + initializer + "] = "
+					+ initializerList() + ";\n");
+		}
+		source.append("\n");
+
+		for(int f = 0; f < functions; f++) {
+			function(f);
+		}
+
+		source.append("void main() {\n");
+		for(int f = 0; f < functions; f++) {
+			source.append("\tf" + f + "(" + random.nextInt(10) + ", "
+					+ random.nextInt(5) + ");\n");
+		}
+		source.append("}\n");
+
+		return source.toString();
+	}
+
+	private void function(int f) {
+		source.append("int f" + f + "(int a, int b) {\n");
+		source.append("\tint i;\n");
+		source.append("\tint total = " + expression(depth) + ";\n");
+
+		// Nested functions can only use the locals of the enclosing function
+		source.append("\tint base = a;\n");
+		if(initializer > 0) {
+			source.append("\tint data[" + initializer + "] = "
+					+ initializerList() + ";\n");
+		}
+
+		for(int n = 0; n < nested; n++) {
+			source.append("\tint f" + f + "_" + n + "(int c) {\n");
+			source.append("\t\treturn c + base * " + (n + 1) + ";\n");
+			source.append("\t}\n");
+		}
+
+		source.append("\tfor(i = 0; i < a; i++) {\n");
+		source.append("\t\tif(i > b) {\n");
+		if(nested > 0) {
+			source.append("\t\t\ttotal = total + f" + f + "_"
+					+ random.nextInt(nested) + "(i);\n");
+		} else {
+			source.append("\t\t\ttotal = total + i;\n");
+		}
+		source.append("\t\t} else {\n");
+		source.append("\t\t\ttotal = total - b;\n");
+		source.append("\t\t}\n");
+		source.append("\t}\n");
+
+		for(int p = 0; p < printfs; p++) {
+			if(p == 0) {
+				source.append("\tprintf(\"f" + f + ": %d\\n\", total);\n");
+			} else if(initializer > 0) {
+				source.append("\tprintf(\"%d %d\\n\", total, data["
+						+ random.nextInt(initializer) + "]);\n");
+			} else {
+				source.append("\tprintf(\"%d %d\\n\", total, i);\n");
+			}
+		}
+
+		source.append("\treturn total;\n");
+		source.append("}\n\n");
+	}
+
+	/**
+	 * Generate an expression with the given nesting depth
+	 *
+	 * Only one side of every operator is nested, so the size of the expression
+	 * is linear in the depth. There are no multiplications, the values stay
+	 * small enough to print them quickly.
+	 *
+	 * @param depth
+	 * @return
+	 */
+	private String expression(int depth) {
+		if(depth == 0) {
+			return operand();
+		}
+
+		String operator = random.nextBoolean() ? "+" : "-";
+		if(random.nextBoolean()) {
+			return "(" + expression(depth - 1) + " " + operator + " "
+					+ operand() + ")";
+		}
+
+		return "(" + operand() + " " + operator + " " + expression(depth - 1)
+				+ ")";
+	}
+
+	private String operand() {
+		int choice = random.nextInt(4);
+		if(choice == 0) {
+			return "a";
+		}
+		if(choice == 1) {
+			return "b";
+		}
+		if(choice == 2 && globals > 0) {
+			return "g" + random.nextInt(globals);
+		}
+
+		return Integer.toString(random.nextInt(10));
+	}
+
+	private String initializerList() {
+		StringBuilder list = new StringBuilder("{");
+		for(int i = 0; i < initializer; i++) {
+			if(i > 0) {
+				list.append(",");
+			}
+			list.append(random.nextInt(100));
+		}
+		list.append("}");
+
+		return list.toString();
+	}
+
+	public static void main(String[] args) {
+		WorkloadGenerator generator = new WorkloadGenerator();
+
+		for(int i = 0; i < args.length; i++) {
+			String[] option = args[i].split("=", 2);
+			if(option.length != 2) {
+				System.err.println("Unknown option: " + args[i]);
+				System.exit(1);
+			}
+
+			int value = Integer.parseInt(option[1]);
+			switch(option[0]) {
+			case "-functions":
+				generator.functions = value;
+				break;
+			case "-globals":
+				generator.globals = value;
+				break;
+			case "-depth":
+				generator.depth = value;
+				break;
+			case "-nested":
+				generator.nested = value;
+				break;
+			case "-initializer":
+				generator.initializer = value;
+				break;
+			case "-printfs":
+				generator.printfs = value;
+				break;
+			case "-seed":
+				generator.seed = value;
+				break;
+			default:
+				System.err.println("Unknown option: " + args[i]);
+				System.exit(1);
+			}
+		}
+
+		System.out.print(generator.generate());
+	}
+}
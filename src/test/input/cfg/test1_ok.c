@@ -0,0 +1,20 @@
+int sum(int n) {
+	int i;
+	int j;
+	int total = 0;
+	for(i = 0; i < n; i = i + 1) {
+		j = 0;
+		while(j < i) {
+			total = total + j;
+			j = j + 1;
+		}
+	}
+	return total;
+}
+
+void main() {
+	if(sum(3) > 2) {
+		return;
+	}
+	sum(1);
+}
@@ -0,0 +1,67 @@
+// Compound assignments and ++/-- compute the address of the target once
+
+#include <stdio.h>
+
+int grid[12];
+int calls = 0;
+
+int at(int i) {
+    calls++;
+    return i;
+}
+
+int mix(int h, int v) {
+    h ^= v * 3;
+    h <<= v - 1;
+    return h += v;
+}
+
+void main() {
+    int i;
+    int k = 4;
+    int x = 100;
+    char c = 'a';
+    int n;
+
+    for(i = 0; i < 12; i++) {
+        grid[i] = i * 3;
+    }
+
+    grid[at(1) * k + 2] += 5;
+    grid[at(2) * k + 1] -= 7;
+    grid[at(0) * k + 3] *= grid[at(1)];
+    grid[at(1) * k + 3] /= 2;
+    printf("%d %d %d %d %d\n", grid[6], grid[9], grid[3], grid[7], calls);
+
+    x %= 7;
+    printf("%d ", x);
+    x <<= 4;
+    printf("%d ", x);
+    x >>= 2;
+    printf("%d ", x);
+    x |= 65;
+    printf("%d ", x);
+    x &= 60;
+    printf("%d ", x);
+    x ^= 255;
+    printf("%d\n", x);
+
+    n = 3;
+    grid[at(2)] %= n + 1;
+    grid[at(3)] <<= n;
+    grid[at(4)] >>= n - 2;
+    grid[at(5)] ^= grid[at(6)] |= n;
+    printf("%d %d %d %d %d %d\n", grid[2], grid[3], grid[4], grid[5], grid[6], calls);
+
+    c += 2;
+    c -= 'a' - 'A';
+    printf("%c ", c);
+
+    i = 5;
+    n = i++ + 10;
+    printf("%d %d ", n, i);
+    n = grid[at(7)]--;
+    printf("%d %d %d ", n, grid[7], calls);
+    x = k += 3;
+    printf("%d %d %d\n", x, k, mix(5, 2));
+}
@@ -0,0 +1,67 @@
+#include <stdio.h>
+
+int a[5] = {2, 3, 5, 7, 11};
+int total = 0;
+
+int square(int x) {
+    return x * x;
+}
+
+void add(int x) {
+    total += x;
+}
+
+void main() {
+    int i = 3;
+    int j = 1;
+
+    // a[i] is loaded once
+    int s = a[i] * a[i] + a[i];
+    printf("%d\n", s);
+
+    // The same product in two statements
+    int x = (a[i] + a[j]) * (a[i] - a[j]);
+    int y = (a[i] + a[j]) * (a[i] - a[j]) + 1;
+    printf("%d %d\n", x, y);
+
+    // i changes between the uses
+    x = a[i] * a[i] * a[i];
+    i = 4;
+    y = a[i] * a[i] * a[i];
+    printf("%d %d\n", x, y);
+
+    // The store changes a[j]
+    x = a[j] * a[j] * a[j];
+    a[j] = 10;
+    y = a[j] * a[j] * a[j];
+    printf("%d %d\n", x, y);
+
+    // add() changes total, but not i
+    x = total * 2 + total * 2 + a[i] * a[i];
+    add(5);
+    y = total * 2 + total * 2 + a[i] * a[i];
+    printf("%d %d\n", x, y);
+
+    // The right side of && doesn't always run
+    j = 0;
+    if(j != 0 && a[i] * a[i] / j > 1) {
+        printf("never\n");
+    }
+    x = a[i] * a[i] * 2;
+    printf("%d\n", x);
+
+    // Increments are done once
+    j = 0;
+    x = a[j++] * a[j++] * a[j++];
+    printf("%d %d\n", x, j);
+
+    // Inlined calls repeat their argument
+    x = square(a[2] + a[3]) + square(a[2] + a[3]);
+    printf("%d\n", x);
+
+    for(i = 0; i < 5; i++) {
+        a[i] = a[i] * a[i] - a[i] * a[i] / 2;
+    }
+    printf("%d %d %d %d %d\n", a[0], a[1], a[2], a[3], a[4]);
+
+}
@@ -0,0 +1,15 @@
+#include <stdio.h>
+
+void main() {
+	char tab = '\t';
+	char hex = '\x41';
+	char octal = '\102';
+	char quote = '\'';
+	char table[4] = "\x43\104\n";
+
+	printf("%d %c %c %c\n", tab, hex, octal, quote);
+	printf("%s", table);
+	printf("\"quoted\" \\ \?\n");
+	printf("%d %d %d %d %d\n", '\a', '\b', '\f', '\r', '\v');
+	printf("%s|\n", "\x41\x42\0\x43");
+}
@@ -0,0 +1,16 @@
+// Compound assignments need a modifiable int, char or pointer
+
+#include <stdio.h>
+
+void main() {
+    const int a = 6;
+    int b = 2;
+    int* p = &b;
+    int t[2];
+
+    a += 1;
+    p += 2;
+    p *= 2;
+    b -= p;
+    t |= 1;
+}
@@ -0,0 +1,23 @@
+// Every error is reported, not only the first
+
+#include <stdio.h>
+
+int twice(int x) {
+    return 2 * x;
+}
+
+int total = missing;
+
+int count(int n) {
+    int i = twice(n, 1);
+    if(n > 0) {
+        n = undeclared + 1;
+    }
+    int i;
+    return i + total;
+}
+
+void main() {
+    printf("%d\n", count(3));
+    twice = 4;
+}
@@ -0,0 +1,16 @@
+// The integer operators only take int and char operands
+
+#include <stdio.h>
+
+void main() {
+    int a = 6;
+    int* p = &a;
+    int t[2];
+    char c = 'x';
+
+    a = a % 4 + (c ^ 32);
+    a = p & 1;
+    a = 2 << p;
+    a = t | 1;
+    a = ~p;
+}
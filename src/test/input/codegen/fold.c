@@ -0,0 +1,17 @@
+#include <stdio.h>
+
+int length = strlen("global");
+
+void main() {
+    printf("%d %d %d\n", strlen("hello"), strlen(""), strlen("a\0b"));
+    printf("%d %d %d %d\n", atoi("42"), atoi("-17"), atoi("12ab"), atoi(""));
+    printf("%d %d\n", chartoint('7'), chartoint('a'));
+    printf("%d %d %d\n", isdigit('x'), isdigit('0'), isdigit('9'));
+    printf("%d %d %d %d\n", pow(2, 10), pow(3, 0), pow(5, -1), pow(3, 21));
+    printf("%d %d %d\n", mod(17, 5), mod(-17, 5), mod(17, -5));
+    printf("%d\n", length);
+
+    // Not literals
+    int n = 3;
+    printf("%d %d\n", pow(n, 2), strlen("abc") * n);
+}
@@ -0,0 +1,45 @@
+// Small functions that can be inlined
+
+#include <stdio.h>
+
+const int WIDTH = 10;
+
+int topos(int x, int y) {
+    return y * WIDTH + x;
+}
+
+int square(int x) {
+    return x * x;
+}
+
+int next(int* p) {
+    return *p = *p + 1;
+}
+
+char upper(char c) {
+    return c - 32;
+}
+
+void main() {
+    int total = 0;
+    for(int i = 0; i < 5; i++) {
+        total = total + topos(i, square(i));
+    }
+    printf("total = %d\n", total);
+
+    int counter = 0;
+    int first = next(&counter);
+    int second = next(&counter);
+    printf("%d %d %d\n", first, second, counter);
+
+    char digits[7] = "a1b2c3";
+    int sum = 0;
+    for(int j = 0; j < 6; j++) {
+        if(isdigit(digits[j])) {
+            sum = sum + chartoint(digits[j]);
+        }
+    }
+    printf("sum = %d\n", sum);
+
+    printf("%c%c\n", upper('o'), upper('k'));
+}
@@ -0,0 +1,88 @@
+#include <stdio.h>
+
+int table[4] = {3, 1, 4, 1};
+int scale = 3;
+char text[10] = {'i', 'n', 'v', '4', 'r', 'i', 'a', 'n', 't', '\0'};
+
+void bump() {
+    scale = scale + 1;
+}
+
+int count(char* s, char c) {
+    int n = 0;
+    int i;
+    char* p = s;
+    for(i = 0; i < strlen(s); i++) {
+        if(*p == c) {
+            n++;
+        }
+        p++;
+    }
+    return n;
+}
+
+void main() {
+    int i;
+    int sum = 0;
+    int width = 7;
+    int height = 5;
+    int zero = 0;
+
+    // width * height and table[2] are the same in every iteration
+    for(i = 0; i < width * height; i++) {
+        sum += table[2] * scale;
+    }
+    printf("%d\n", sum);
+
+    // scale changes in the loop
+    sum = 0;
+    i = 0;
+    while(i < 4) {
+        sum += scale * 2;
+        bump();
+        i++;
+    }
+    printf("%d %d\n", sum, scale);
+
+    // The division isn't done when the loop doesn't run
+    for(i = 0; i < zero; i++) {
+        sum += width / zero;
+    }
+    printf("%d\n", sum);
+
+    // The condition runs first, so its division can move
+    i = 0;
+    while(i < 100 / width) {
+        i++;
+    }
+    printf("%d\n", i);
+
+    // Inner loop invariants move out of both loops
+    sum = 0;
+    int j;
+    for(i = 0; i < 3; i++) {
+        for(j = 0; j < height; j++) {
+            sum += width * height + i;
+        }
+    }
+    printf("%d\n", sum);
+
+    // Stores through a subscript change what strlen reads
+    i = 0;
+    while(i < strlen(text)) {
+        text[i] = 'x';
+        i += 2;
+    }
+    print(text);
+    printf(" %d %d\n", count(text, 'x'), count("banana", 'a'));
+
+    // isdigit of a constant character
+    sum = 0;
+    for(i = 0; i < 3; i++) {
+        if(isdigit(text[3])) {
+            sum++;
+        }
+    }
+    printf("%d\n", sum);
+
+}
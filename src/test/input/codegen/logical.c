@@ -0,0 +1,49 @@
+// Short-circuit evaluation of && and ||
+
+#include <stdio.h>
+
+int calls = 0;
+
+int check(int value) {
+    calls++;
+    return value;
+}
+
+void main() {
+    int a = 0;
+    int b = 5;
+
+    if(a != 0 && 10 / a > 1) {
+        print("wrong\n");
+    } else {
+        print("no division by zero\n");
+    }
+
+    int r = (check(0) && check(1));
+    printf("%d %d\n", r, calls);
+
+    r = (check(1) || check(0));
+    printf("%d %d\n", r, calls);
+
+    r = (check(1) && check(0) || check(1));
+    printf("%d %d\n", r, calls);
+
+    r = !(check(0) || check(0));
+    printf("%d %d\n", r, calls);
+
+    int i = 0;
+    while(i < 10 && !(i == b)) {
+        i++;
+    }
+    printf("i = %d\n", i);
+
+    for(int j = 0; j < 3 || j == 7; j++) {
+        if(j == 1 || j == 2 && b) {
+            printf("j = %d\n", j);
+        }
+    }
+
+    if(!a) {
+        print("done\n");
+    }
+}
@@ -0,0 +1,15 @@
+// integer operators that are written out inline, without their routines
+
+#include <stdio.h>
+
+void main() {
+	int x = 45;
+	int y = 7;
+
+	printf("%d %d %d\n", x << 2, x >> 1, x & 7);
+	printf("%d %d %d\n", x % 5, x % y, ~x);
+
+	x <<= 3;
+	x %= 11;
+	printf("%d\n", x);
+}
@@ -0,0 +1,41 @@
+// %, <<, >>, &, |, ^ and ~, with C precedence
+
+#include <stdio.h>
+
+char text[6] = {'h', 'e', 'l', 'l', 'o', '!'};
+
+int hash(int n) {
+    int h = 5381;
+    int i;
+    for(i = 0; i < n; i++) {
+        h = ((h << 5) + h) ^ text[i];
+        h = h & 1048575;
+    }
+    return h;
+}
+
+int pack(int r, int g, int b) {
+    return r << 16 | g << 8 | b;
+}
+
+void main() {
+    int a = 1234;
+    int b = -77;
+    int n = 3;
+    int m = 10;
+    int c;
+
+    printf("%d %d %d %d\n", a % 10, b % 10, a % m, b % (n + 4));
+    printf("%d %d %d %d\n", a << 3, b << 2, a << n, 1 << 30);
+    printf("%d %d %d %d\n", a >> 2, b >> 2, b >> n, b >> 31);
+    printf("%d %d %d %d\n", a & 255, b & 255, 15 & b, a & b);
+    printf("%d %d %d %d\n", a | b, a | 5, a ^ b, a ^ a);
+    printf("%d %d %d %d\n", ~a, ~b, ~0, ~~a);
+
+    c = a & 7 | 8;
+    printf("%d %d %d\n", c, 10 - 2 + 3, 20 / 2 * 5);
+    printf("%d %d\n", 1 + 2 << 3, 6 & 3 == 3);
+    printf("%d %d\n", pack(18, 52, 86), pack(255, 255, 255) >> 8 & 255);
+    printf("%d\n", hash(6));
+    printf("%d %d\n", 'a' % 8, 'z' ^ ' ');
+}
@@ -0,0 +1,76 @@
+// Subscripts in counted for loops use running pointers with -O
+
+#include <stdio.h>
+
+int data[16];
+char text[8] = {'p', 'o', 'i', 'n', 't', 'e', 'r', 's'};
+
+int sum(int n) {
+    int total = 0;
+    int i;
+    for(i = 0; i < n; i++) {
+        total += data[i];
+    }
+    return total;
+}
+
+void main() {
+    int i;
+    int j;
+    int local[10];
+    int grid[16];
+    int n = 0;
+
+    for(i = 0; i < 16; i++) {
+        data[i] = i * i;
+    }
+    printf("%d\n", sum(16));
+
+    // Neighbours, writes and increments through the pointers
+    for(i = 1; i < 15; i++) {
+        grid[i] = data[i - 1] + data[i] + data[i + 1];
+        grid[i] += 1;
+        data[i]++;
+    }
+    printf("%d %d %d\n", grid[1], grid[14], data[7]);
+
+    // Counting down in steps of 3
+    for(i = 9; i >= 0; i -= 3) {
+        local[i] = i;
+    }
+    printf("%d %d %d %d\n", local[0], local[3], local[6], local[9]);
+
+    // The condition reads the array, continue still moves the pointer
+    for(i = 0; text[i] != 's'; i++) {
+        if(text[i] == 'o') {
+            continue;
+        }
+        printf("%c", text[i]);
+    }
+    printf("\n");
+
+    // Nested loops, the inner subscripts use j
+    for(i = 0; i < 4; i++) {
+        for(j = 0; j < 4; j++) {
+            grid[j + 4] = i * j + data[i];
+        }
+        n += grid[7];
+    }
+    printf("%d\n", n);
+
+    // i changes in the body, no pointer
+    for(i = 0; i < 10; i++) {
+        local[i] = 1;
+        i = i + 1;
+    }
+    printf("%d %d\n", local[0], local[2]);
+
+    // Only one conditional subscript, no pointer
+    n = 0;
+    for(i = 0; i < 16; i += 2) {
+        if(i > 10) {
+            n += data[i];
+        }
+    }
+    printf("%d\n", n);
+}
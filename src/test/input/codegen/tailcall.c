@@ -0,0 +1,33 @@
+// Self recursive tail calls
+
+#include <stdio.h>
+
+int sum(int n, int acc) {
+    if(n == 0) {
+        return acc;
+    }
+    return sum(n - 1, acc + n);
+}
+
+int gcd(int a, int b) {
+    if(b == 0) {
+        return a;
+    }
+    return gcd(b, mod(a, b));
+}
+
+int count(char* s, char c, int n) {
+    if(*s == 0) {
+        return n;
+    }
+    if(*s == c) {
+        return count(s + 1, c, n + 1);
+    }
+    return count(s + 1, c, n);
+}
+
+void main() {
+    printf("%d\n", sum(1000, 0));
+    printf("%d\n", gcd(1071, 462));
+    printf("%d\n", count("mississippi", 's', 0));
+}
@@ -0,0 +1,32 @@
+int a[4];
+int g;
+
+void change() {
+    g = 1;
+}
+
+int shared(int i) {
+    return a[i] * a[i] + a[i];
+}
+
+int assigned(int i) {
+    int x = a[i] * a[i];
+    i = 2;
+    return a[i] * a[i];
+}
+
+int called(int i) {
+    int x = g * g * g + a[i] * a[i];
+    change();
+    return g * g * g + a[i] * a[i];
+}
+
+int conditional(int i) {
+    if(i != 0 && a[i] * a[i] > 1) {
+        return 1;
+    }
+    return 0;
+}
+
+void main() {
+}
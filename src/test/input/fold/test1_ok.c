@@ -0,0 +1,13 @@
+#include <stdio.h>
+
+int folded() {
+    return strlen("abc") + pow(2, 3) + mod(7, 4) + isdigit('1');
+}
+
+int kept(int n) {
+    strlen("statement");
+    return pow(n, 2) + mod(7, 0);
+}
+
+void main() {
+}
@@ -0,0 +1,35 @@
+#include <stdio.h>
+
+int first = 7;
+int total = 0;
+char* name = "total";
+
+void hello() {
+	printf("hello\n");
+}
+
+int square(int n) {
+	return n * n;
+}
+
+int sum(int n) {
+	int add(int i) {
+		total = total + square(i);
+		return total;
+	}
+
+	int i;
+	for(i = 0; i < n; i = i + 1) {
+		add(i);
+	}
+	return total;
+}
+
+void main() {
+	hello();
+
+	printf("%s %d\n", name, sum(4));
+	if(total > 10 && square(2) == 4) {
+		printf("big\n");
+	}
+}
@@ -0,0 +1,28 @@
+#include <stdio.h>
+
+int total = 0;
+char* name = "total";
+
+int square(int n) {
+	return n * n;
+}
+
+int sum(int n) {
+	int add(int i) {
+		total = total + square(i);
+		return total;
+	}
+
+	int i;
+	for(i = 0; i < n; i = i + 1) {
+		add(i);
+	}
+	return total;
+}
+
+void main() {
+	printf("%s %d\n", name, sum(4));
+	if(total > 10 && square(2) == 4) {
+		printf("big\n");
+	}
+}
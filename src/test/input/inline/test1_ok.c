@@ -0,0 +1,25 @@
+// Calls that should be inlined
+
+#include <stdio.h>
+
+int add(int a, int b) {
+    return a + b;
+}
+
+int twice(int a) {
+    return add(a, a);
+}
+
+int fac(int n) {
+    if(n <= 1) {
+        return 1;
+    }
+    return n * fac(n - 1);
+}
+
+void main() {
+    int x = add(1, 2);
+    int y = twice(x);
+    int z = fac(3);
+    int d = isdigit('5');
+}
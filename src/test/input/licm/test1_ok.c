@@ -0,0 +1,47 @@
+#include <stdio.h>
+
+int a[4];
+int g;
+
+void change() {
+    g = 1;
+}
+
+int moved(char* s, int n) {
+    int i;
+    int sum = 0;
+    for(i = 0; i < strlen(s); i++) {
+        sum = sum + n * 2 + a[1];
+    }
+    return sum;
+}
+
+int assigned(int n) {
+    int sum = 0;
+    while(sum < n * 2) {
+        n = n - 1;
+        sum++;
+    }
+    return sum;
+}
+
+int called(int n) {
+    int sum = 0;
+    while(sum < g * 2) {
+        change();
+        sum = sum + n * 2;
+    }
+    return sum;
+}
+
+int guarded(int n, int d) {
+    int i;
+    int sum = 0;
+    for(i = 0; i < n; i++) {
+        sum = sum + n / d;
+    }
+    return sum;
+}
+
+void main() {
+}
@@ -0,0 +1,15 @@
+#include <stdio.h>
+
+int twice(int n) {
+	int inner(int m) {
+		return m + m;
+	}
+	return inner(n);
+}
+
+void main() {
+	int i;
+	for(i = 0; i < 3; i = i + 1) {
+		printf("%d\n", twice(i));
+	}
+}
@@ -0,0 +1,19 @@
+int fact(int n) {
+	if(n < 2) {
+		return 1;
+	}
+	return n * fact(n - 1);
+}
+
+int square(int n) {
+	return n * n;
+}
+
+void main() {
+	int i;
+	int total = 0;
+	for(i = 0; i < 10; i = i + 1) {
+		total = total + square(i);
+	}
+	total = total + fact(5);
+}
@@ -0,0 +1,38 @@
+int a[10];
+
+void reduced() {
+    int i;
+    for(i = 0; i < 10; i++) {
+        a[i] = a[i] + a[i + 1];
+    }
+}
+
+void assigned() {
+    int i;
+    for(i = 0; i < 10; i++) {
+        a[i] = 0;
+        i = i + 1;
+    }
+}
+
+void address() {
+    int i;
+    int* p = &i;
+    for(i = 0; i < 10; i++) {
+        a[i] = *p;
+    }
+}
+
+void nested() {
+    int i;
+    void skip() {
+        i = i + 1;
+    }
+    for(i = 0; i < 10; i++) {
+        a[i] = 0;
+        skip();
+    }
+}
+
+void main() {
+}
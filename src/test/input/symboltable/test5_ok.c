@@ -0,0 +1,9 @@
+#include <stdio.h>
+
+void main() {
+	printf("%d\n", 1);
+	printf("%d\n", 2);
+	printf("d\n");
+	printf("");
+	printf("%c\n", 'a');
+}
@@ -0,0 +1,30 @@
+// Tail calls
+
+int sum(int n, int acc) {
+    if(n == 0) {
+        return acc;
+    }
+    return sum(n - 1, acc + n);
+}
+
+int fac(int n) {
+    if(n <= 1) {
+        return 1;
+    }
+    return n * fac(n - 1);
+}
+
+int address(int n) {
+    int local = n;
+    int* p = &local;
+    if(n == 0) {
+        return 0;
+    }
+    return address(n - 1);
+}
+
+void main() {
+    sum(10, 0);
+    fac(3);
+    address(3);
+}
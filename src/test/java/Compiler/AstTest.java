@@ -240,4 +240,35 @@ public class AstTest extends TestCase {
 				((Ast.IntNode) decl2.children.get(1)).value == 2);
 	}
 
+	public void testEscapes() {
+		Log.debug("testEscapes");
+
+		assertEquals("plain", AstParser.unescape("plain", 1));
+		assertEquals("a\nb\tc\\d\"e'f?", AstParser.unescape(
+				"a\\nb\\tc\\\\d\\\"e\\'f\\?", 1));
+		assertEquals("\u0007\b\f\r\u000b",
+				AstParser.unescape("\\a\\b\\f\\r\\v", 1));
+		assertEquals("\0A", AstParser.unescape("\\0\\101", 1));
+		assertEquals("\u00078", AstParser.unescape("\\78", 1));
+		assertEquals("AB11", AstParser.unescape("\\x41\\x0042\\0611", 1));
+		assertEquals("\u00ff", AstParser.unescape("\\xfF", 1));
+
+		StringBuilder text = new StringBuilder();
+		for(int i = 0; i < 100000; i++) {
+			text.append("\\n");
+		}
+		assertEquals(100000, AstParser.unescape(text.toString(), 1).length());
+
+		boolean exception = Log.exception;
+		Log.exception = true;
+		try {
+			AstParser.unescape("\\x100", 3);
+			fail("Hex escape out of range");
+		} catch(Log.FatalException e) {
+			assertEquals("3: Hex escape sequence out of range", e.getMessage());
+		} finally {
+			Log.exception = exception;
+		}
+	}
+
 }
@@ -0,0 +1,127 @@
+package Compiler;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Vector;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+public class BuiltinFoldingTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public BuiltinFoldingTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(BuiltinFoldingTest.class);
+	}
+
+	private int countCalls(Ast.Node node) {
+		int count = node instanceof Ast.FunctionCallNode ? 1 : 0;
+		for(int i = 0; i < node.children.size(); i++) {
+			if(node.children.get(i) != null) {
+				count += countCalls(node.children.get(i));
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Test which calls are evaluated
+	 */
+	public void testBuiltinFolding() {
+		Log.debug("testBuiltinFolding");
+
+		try {
+			InputStream is = new FileInputStream(
+					"src/test/input/fold/test1_ok.c");
+			ANTLRInputStream input = new ANTLRInputStream(is);
+			CLexer lexer = new CLexer(input);
+			AstParser parser = new AstParser(new CommonTokenStream(lexer));
+			Ast.Node root = parser.buildAst();
+
+			SymbolTableVisitor visitor = new SymbolTableVisitor();
+			visitor.visit(root);
+			int calls = countCalls(root);
+			BuiltinFolding optimizer = new BuiltinFolding();
+			optimizer.visit(root);
+
+			// "abc" was only an argument of strlen
+			visitor.poolStrings((Ast.FileNode) root);
+			assertEquals(1, ((Ast.FileNode) root).stringLiterals.size());
+			assertEquals("statement",
+					((Ast.FileNode) root).stringLiterals.get(0));
+
+			assertEquals(4, optimizer.folded.size());
+			// The statement, pow(n, 2) and mod by zero are left
+			assertEquals(calls - 4, countCalls(root));
+			assertEquals("line 4: 'strlen' evaluated to 4",
+					optimizer.folded.get(0));
+			assertEquals("line 4: 'pow' evaluated to 8", optimizer.folded.get(1));
+			assertEquals("line 4: 'mod' evaluated to 3", optimizer.folded.get(2));
+			assertEquals("line 4: 'isdigit' evaluated to 1",
+					optimizer.folded.get(3));
+		} catch(Log.FatalException e) {
+			System.out.println(e.toString());
+			assertTrue(false);
+		} catch(FileNotFoundException e) {
+			fail("Could not load input file");
+			return;
+		} catch(IOException e) {
+			fail("Could not load input file");
+			return;
+		}
+	}
+
+	/**
+	 * Test that the literals of folded calls aren't stored
+	 */
+	public void testStringPool() throws IOException {
+		Log.debug("testStringPool");
+
+		PrintStream discard = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		});
+
+		App.foldBuiltins = true;
+		try {
+			Vector<String> code = App.compile(
+					new ANTLRInputStream(new FileInputStream(
+							"src/test/input/fold/test1_ok.c")), discard,
+					new Metrics()).getInstructions();
+
+			// The characters of "statement" and its terminator
+			int characters = 0;
+			while(code.get(characters).startsWith("ldc c ")) {
+				characters += 1;
+			}
+			assertEquals("statement".length() + 1, characters);
+		} finally {
+			App.foldBuiltins = false;
+		}
+	}
+
+}
@@ -0,0 +1,283 @@
+package Compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+
+/**
+ * @brief Compiles and runs every program in src/test/input/codegen
+ *
+ *        The output of the program on the P-machine must be the same as the
+ *        .out file next to it. The programs in the fail directory must print
+ *        the errors or warnings and code in their .out file when compiled.
+ */
+public class CodegenTest extends TestCase {
+
+	private static final String directory = "src/test/input/codegen";
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public CodegenTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(CodegenTest.class);
+	}
+
+	private static File[] programs(String directory) {
+		File[] files = new File(directory).listFiles();
+		Vector<File> programs = new Vector<File>();
+		for(int i = 0; i < files.length; i++) {
+			if(files[i].getName().endsWith(".c")) {
+				programs.add(files[i]);
+			}
+		}
+
+		File[] result = programs.toArray(new File[programs.size()]);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()),
+				StandardCharsets.UTF_8);
+	}
+
+	private static Vector<String> compile(File file, PrintStream out)
+			throws IOException {
+		ANTLRInputStream input = new ANTLRInputStream(new FileInputStream(
+				file));
+		return App.compile(input, out, new Metrics()).getInstructions();
+	}
+
+	/**
+	 * Compile and run a program
+	 *
+	 * @param file
+	 * @return description of the failure, null if the output is correct
+	 */
+	private static String check(File file) {
+		try {
+			PrintStream discard = new PrintStream(new OutputStream() {
+				@Override
+				public void write(int b) {
+				}
+			});
+			PMachine machine = new PMachine(compile(file, discard));
+			String output = machine.run("");
+			String expected = read(new File(file.getPath() + ".out"));
+
+			if(!output.equals(expected)) {
+				return file.getName() + ": expected [" + expected
+						+ "] but was [" + output + "]";
+			}
+		} catch(Exception e) {
+			return file.getName() + ": " + e.toString();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Compile a program that doesn't compile
+	 *
+	 * @param file
+	 * @return description of the failure, null if the messages are correct
+	 */
+	private static String checkFail(File file) {
+		try {
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			PrintStream out = new PrintStream(buffer, true, "UTF-8");
+			Log.setOut(out);
+			Log.setExit(false);
+			try {
+				compile(file, out);
+			} catch(Log.FatalException e) {
+			} finally {
+				Log.setOut(System.out);
+				Log.setExit(true);
+			}
+
+			String output = buffer.toString("UTF-8");
+			String expected = read(new File(file.getPath() + ".out"));
+			if(!output.equals(expected)) {
+				return file.getName() + ": expected [" + expected
+						+ "] but was [" + output + "]";
+			}
+		} catch(Exception e) {
+			return file.getName() + ": " + e.toString();
+		}
+
+		return null;
+	}
+
+	/**
+	 * Check all programs in parallel
+	 */
+	private void checkAll() throws Exception {
+		checkAll(programs(directory), false);
+	}
+
+	/**
+	 * Check the programs in parallel
+	 *
+	 * @param fail
+	 *            whether the programs don't compile
+	 */
+	private void checkAll(File[] files, final boolean fail) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(Runtime
+				.getRuntime().availableProcessors());
+
+		try {
+			Vector<Future<String>> results = new Vector<Future<String>>();
+			for(int i = 0; i < files.length; i++) {
+				final File file = files[i];
+				results.add(pool.submit(new Callable<String>() {
+					@Override
+					public String call() {
+						return fail ? checkFail(file) : check(file);
+					}
+				}));
+			}
+
+			String failures = "";
+			for(int i = 0; i < results.size(); i++) {
+				if(results.get(i).get() != null) {
+					failures += results.get(i).get() + "\n";
+				}
+			}
+			assertEquals("", failures);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Test the output of the programs
+	 */
+	public void testCodegen() throws Exception {
+		Log.debug("testCodegen");
+
+		checkAll();
+	}
+
+	/**
+	 * Test the output of the programs with all optimizations
+	 */
+	public void testCodegenOptimized() throws Exception {
+		Log.debug("testCodegenOptimized");
+
+		App.parseArguments(new String[] { "-O" });
+		try {
+			checkAll();
+		} finally {
+			App.inline = false;
+			App.tailCalls = false;
+			App.jumpThreading = false;
+			App.strengthReduction = false;
+			App.loopInvariantMotion = false;
+			App.commonSubexpressions = false;
+			App.foldBuiltins = false;
+		}
+	}
+
+	/**
+	 * Test the output of the programs with the data instructions kept
+	 */
+	public void testCodegenBulkData() throws Exception {
+		Log.debug("testCodegenBulkData");
+
+		App.bulkData = true;
+		try {
+			checkAll();
+		} finally {
+			App.bulkData = false;
+		}
+	}
+
+	private static Vector<Operator> routines(Vector<String> code) {
+		Vector<Operator> routines = new Vector<Operator>();
+		for(int i = 0; i < code.size(); i++) {
+			if(ControlFlowGraph.isLabel(code.get(i))
+					&& Operator.routine(ControlFlowGraph.getLabel(code
+							.get(i))) != null) {
+				routines.add(Operator.routine(ControlFlowGraph.getLabel(code
+						.get(i))));
+			}
+		}
+
+		return routines;
+	}
+
+	/**
+	 * Test that only the routines of operators that aren't written out inline
+	 * are in the code
+	 */
+	public void testRoutines() throws Exception {
+		Log.debug("testRoutines");
+
+		PrintStream discard = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		});
+
+		Vector<String> code = compile(new File(directory + "/lowered.c"),
+				discard);
+		assertEquals(0, routines(code).size());
+
+		code = compile(new File(directory + "/operators.c"), discard);
+		assertTrue(routines(code).contains(Operator.SHIFT_LEFT));
+		assertTrue(routines(code).contains(Operator.REMAINDER));
+	}
+
+	/**
+	 * Test the messages of programs that don't compile
+	 */
+	public void testCodegenFail() throws Exception {
+		Log.debug("testCodegenFail");
+
+		// Every program a few times, so the compilations overlap. The
+		// messages of each must stay with it.
+		File[] files = programs(directory + "/fail");
+		File[] repeated = new File[files.length * 4];
+		for(int i = 0; i < repeated.length; i++) {
+			repeated[i] = files[i % files.length];
+		}
+
+		Log.exception = false;
+		try {
+			checkAll(repeated, true);
+		} finally {
+			Log.exception = true;
+		}
+	}
+
+}
@@ -0,0 +1,103 @@
+package Compiler;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+public class CommonSubexpressionsTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public CommonSubexpressionsTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(CommonSubexpressionsTest.class);
+	}
+
+	private Ast.FunctionDeclarationNode getFunction(Ast.Node root, String id) {
+		for(int i = 0; i < root.children.size(); i++) {
+			if(root.children.get(i) instanceof Ast.FunctionDeclarationNode
+					&& ((Ast.FunctionDeclarationNode) root.children.get(i)).id
+							.equals(id)) {
+				return (Ast.FunctionDeclarationNode) root.children.get(i);
+			}
+		}
+
+		return null;
+	}
+
+	private int countTemps(Ast.Node node) {
+		int count = 0;
+		if(node instanceof Ast.DeclarationNode
+				&& ((Ast.DeclarationNode) node).id.startsWith("common")) {
+			count += 1;
+		}
+		for(int i = 0; i < node.children.size(); i++) {
+			if(node.children.get(i) != null) {
+				count += countTemps(node.children.get(i));
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Test which expressions share a temporary
+	 */
+	public void testCommonSubexpressions() {
+		Log.debug("testCommonSubexpressions");
+
+		try {
+			InputStream is = new FileInputStream(
+					"src/test/input/cse/test1_ok.c");
+			ANTLRInputStream input = new ANTLRInputStream(is);
+			CLexer lexer = new CLexer(input);
+			AstParser parser = new AstParser(new CommonTokenStream(lexer));
+			Ast.Node root = parser.buildAst();
+
+			Visitor visitor = new SymbolTableVisitor();
+			visitor.visit(root);
+			CommonSubexpressions optimizer = new CommonSubexpressions();
+			optimizer.visit(root);
+
+			// a[i] is loaded once
+			assertEquals(1, countTemps(getFunction(root, "shared")));
+			// i is assigned between the two products
+			assertEquals(2, countTemps(getFunction(root, "assigned")));
+			// change() may assign g and a, a[i] is loaded once per statement
+			assertEquals(2, countTemps(getFunction(root, "called")));
+			assertEquals("The right side of && doesn't always run", 0,
+					countTemps(getFunction(root, "conditional")));
+			assertEquals(5, optimizer.eliminated.size());
+		} catch(Log.FatalException e) {
+			System.out.println(e.toString());
+			assertTrue(false);
+		} catch(FileNotFoundException e) {
+			fail("Could not load input file");
+			return;
+		} catch(IOException e) {
+			fail("Could not load input file");
+			return;
+		}
+	}
+
+}
@@ -0,0 +1,120 @@
+package Compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class CompileCacheTest extends TestCase {
+
+	private File directory;
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public CompileCacheTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(CompileCacheTest.class);
+	}
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("cache").toFile();
+	}
+
+	@Override
+	protected void tearDown() {
+		File[] files = directory.listFiles();
+		for(int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		directory.delete();
+	}
+
+	private static CompileCache.Entry entry(int size) {
+		CompileCache.Entry entry = new CompileCache.Entry();
+		entry.out = new byte[size];
+		return entry;
+	}
+
+	private File file(String key) {
+		return new File(directory, key + ".entry");
+	}
+
+	/**
+	 * Test the inputs of the key
+	 */
+	public void testKey() {
+		Log.debug("testKey");
+
+		byte[] source = "void main() {}".getBytes(StandardCharsets.UTF_8);
+		String key = CompileCache.key(source, new String[] {});
+
+		assertEquals(key, CompileCache.key(source, new String[] {}));
+		assertEquals(key, CompileCache.key(source,
+				new String[] { "-fcache=dir" }));
+		assertFalse(key.equals(CompileCache.key(source, new String[] { "-O" })));
+		assertFalse(key.equals(CompileCache.key(
+				"void main() { }".getBytes(StandardCharsets.UTF_8),
+				new String[] {})));
+	}
+
+	/**
+	 * Test storing and reading an entry
+	 */
+	public void testEntry() throws IOException {
+		Log.debug("testEntry");
+
+		CompileCache cache = new CompileCache(directory.getPath(), 1024);
+		assertNull(cache.get("a"));
+
+		CompileCache.Entry entry = new CompileCache.Entry();
+		entry.status = 1;
+		entry.out = "ldc i 1\n".getBytes(StandardCharsets.UTF_8);
+		entry.err = "error\n".getBytes(StandardCharsets.UTF_8);
+		cache.put("a", entry);
+
+		CompileCache.Entry cached = cache.get("a");
+		assertEquals(1, cached.status);
+		assertTrue(Arrays.equals(entry.out, cached.out));
+		assertTrue(Arrays.equals(entry.err, cached.err));
+	}
+
+	/**
+	 * Test removing the least recently used entries
+	 */
+	public void testEviction() throws IOException {
+		Log.debug("testEviction");
+
+		CompileCache cache = new CompileCache(directory.getPath(), 250);
+		cache.put("a", entry(80));
+		cache.put("b", entry(80));
+		file("a").setLastModified(1000000);
+		file("b").setLastModified(2000000);
+
+		// Using a makes b the oldest
+		assertNotNull(cache.get("a"));
+		cache.put("c", entry(80));
+
+		assertTrue(file("a").exists());
+		assertFalse(file("b").exists());
+		assertTrue(file("c").exists());
+	}
+
+}
@@ -0,0 +1,150 @@
+package Compiler;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Vector;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+public class ControlFlowGraphTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public ControlFlowGraphTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(ControlFlowGraphTest.class);
+	}
+
+	private Vector<String> compile(String filename) throws IOException {
+		InputStream is = new FileInputStream(filename);
+		ANTLRInputStream input = new ANTLRInputStream(is);
+		CLexer lexer = new CLexer(input);
+		AstParser parser = new AstParser(new CommonTokenStream(lexer));
+		Ast.Node root = parser.buildAst();
+
+		Visitor visitor = new SymbolTableVisitor();
+		visitor.visit(root);
+		visitor = new SemanticVisitor();
+		visitor.visit(root);
+
+		return root.code();
+	}
+
+	/**
+	 * Test blocks, dominators and loops of a compiled program
+	 */
+	public void testProgram() {
+		Log.debug("testProgram");
+
+		try {
+			Vector<String> instructions = compile("src/test/input/cfg/test1_ok.c");
+			ControlFlowGraph cfg = new ControlFlowGraph(instructions);
+
+			assertEquals("Instructions should be unchanged", instructions,
+					cfg.toInstructions());
+
+			// program, init, sum and main
+			assertEquals(4, cfg.entries.size());
+			assertTrue(cfg.blocks.get(0).entry);
+
+			// for loop with a nested while loop
+			assertEquals(2, cfg.loops.size());
+			ControlFlowGraph.BasicBlock outer = null;
+			ControlFlowGraph.BasicBlock inner = null;
+			for(int i = 0; i < cfg.loops.size(); i++) {
+				if(cfg.loops.get(i).parent == null) {
+					outer = cfg.loops.get(i).header;
+				} else {
+					inner = cfg.loops.get(i).header;
+				}
+			}
+			assertNotNull(outer);
+			assertNotNull(inner);
+			assertEquals(1, outer.getLoopDepth());
+			assertEquals(2, inner.getLoopDepth());
+			assertEquals(outer, inner.loop.parent.header);
+			assertTrue(cfg.dominates(outer, inner));
+			assertTrue(!cfg.dominates(inner, outer));
+
+			// the exit of the for loop is only reached through its test
+			ControlFlowGraph.BasicBlock exit = null;
+			for(int i = 0; i < outer.successors.size(); i++) {
+				if(outer.successors.get(i).loop == null) {
+					exit = outer.successors.get(i);
+				}
+			}
+			assertNotNull(exit);
+			assertEquals(outer, exit.dominator);
+
+			// code after a return is never executed
+			int unreachable = 0;
+			for(int i = 0; i < cfg.blocks.size(); i++) {
+				if(!cfg.blocks.get(i).reachable) {
+					unreachable += 1;
+				}
+			}
+			assertEquals(2, unreachable);
+		} catch(Log.FatalException e) {
+			System.out.println(e.toString());
+			assertTrue(false);
+		} catch(FileNotFoundException e) {
+			fail("Could not load input file");
+			return;
+		} catch(IOException e) {
+			fail("Could not load input file");
+			return;
+		}
+	}
+
+	/**
+	 * Test the edges of a diamond and consecutive labels
+	 */
+	public void testDiamond() {
+		Log.debug("testDiamond");
+
+		Vector<String> instructions = new Vector<String>();
+		instructions.add("ldc b t");
+		instructions.add("fjp else");
+		instructions.add("ldc i 1");
+		instructions.add("ujp end");
+		instructions.add("else:");
+		instructions.add("ldc i 2");
+		instructions.add("end:");
+		instructions.add("done:");
+		instructions.add("hlt");
+
+		ControlFlowGraph cfg = new ControlFlowGraph(instructions);
+		assertEquals(4, cfg.blocks.size());
+		assertEquals(cfg.getBlock("end"), cfg.getBlock("done"));
+
+		ControlFlowGraph.BasicBlock start = cfg.blocks.get(0);
+		ControlFlowGraph.BasicBlock end = cfg.getBlock("end");
+		assertEquals(2, start.successors.size());
+		assertEquals(2, end.predecessors.size());
+		assertEquals(0, end.successors.size());
+		assertEquals(start, end.dominator);
+		assertEquals(start, cfg.getBlock("else").dominator);
+		assertEquals(0, cfg.loops.size());
+		assertEquals(instructions, cfg.toInstructions());
+	}
+
+}
@@ -0,0 +1,184 @@
+package Compiler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Vector;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+
+public class FunctionCacheTest extends TestCase {
+
+	private static final String directory = "src/test/input/incremental/";
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public FunctionCacheTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(FunctionCacheTest.class);
+	}
+
+	private static Vector<String> compile(String file, FunctionCache cache)
+			throws IOException {
+		PrintStream discard = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		});
+		return App.compile(new ANTLRInputStream(new FileInputStream(file)),
+				discard, new Metrics(), cache).getInstructions();
+	}
+
+	private static String run(Vector<String> code) {
+		return new PMachine(code).run("");
+	}
+
+	/**
+	 * Test that only the changed function is generated again
+	 */
+	public void testEdit() throws IOException {
+		Log.debug("testEdit");
+
+		FunctionCache cache = new FunctionCache();
+		compile(directory + "test1_ok.c", cache);
+		assertEquals(0, cache.hits);
+		assertEquals(5, cache.misses);
+
+		Vector<String> code = compile(directory + "test1_edit_ok.c", cache);
+		assertEquals(4, cache.hits);
+		assertEquals(1, cache.misses);
+		assertEquals(run(compile(directory + "test1_edit_ok.c", null)),
+				run(code));
+	}
+
+	/**
+	 * Test that the callers of an inlined function are generated again when
+	 * it changes
+	 */
+	public void testEditInlined() throws IOException {
+		Log.debug("testEditInlined");
+
+		App.inline = true;
+		try {
+			FunctionCache cache = new FunctionCache();
+			compile(directory + "test1_ok.c", cache);
+
+			// square, sum with add and main
+			Vector<String> code = compile(directory + "test1_edit_ok.c", cache);
+			assertEquals(2, cache.hits);
+			assertEquals(3, cache.misses);
+			assertEquals(compile(directory + "test1_edit_ok.c", null).size(),
+					code.size());
+			assertEquals(run(compile(directory + "test1_edit_ok.c", null)),
+					run(code));
+		} finally {
+			App.inline = false;
+		}
+	}
+
+	/**
+	 * Test reusing code after the globals, strings and labels moved
+	 */
+	public void testInsert() throws IOException {
+		Log.debug("testInsert");
+
+		FunctionCache cache = new FunctionCache();
+		compile(directory + "test1_ok.c", cache);
+
+		// square and sum
+		Vector<String> code = compile(directory + "test1_insert_ok.c", cache);
+		assertEquals(2, cache.hits);
+		assertEquals(run(compile(directory + "test1_insert_ok.c", null)),
+				run(code));
+	}
+
+	/**
+	 * Test writing the cache to a file and reading it back
+	 */
+	public void testSave() throws IOException {
+		Log.debug("testSave");
+
+		File file = File.createTempFile("cache", ".bin");
+		try {
+			FunctionCache cache = new FunctionCache();
+			compile(directory + "test1_ok.c", cache);
+			cache.save(file.getPath());
+
+			cache = FunctionCache.load(file.getPath());
+			compile(directory + "test1_ok.c", cache);
+			assertEquals(5, cache.hits);
+			assertEquals(0, cache.misses);
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test that a cache written by another compiler isn't used
+	 */
+	public void testOtherCompiler() throws IOException {
+		Log.debug("testOtherCompiler");
+
+		File file = File.createTempFile("cache", ".bin");
+		try {
+			FunctionCache cache = new FunctionCache();
+			compile(directory + "test1_ok.c", cache);
+			cache.compiler = "other " + cache.compiler;
+			cache.save(file.getPath());
+
+			cache = FunctionCache.load(file.getPath());
+			compile(directory + "test1_ok.c", cache);
+			assertEquals(0, cache.hits);
+			assertEquals(5, cache.misses);
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test compiling every code generation program twice
+	 */
+	public void testCodegen() throws IOException {
+		Log.debug("testCodegen");
+
+		File[] files = new File("src/test/input/codegen").listFiles();
+		for(int i = 0; i < files.length; i++) {
+			if(!files[i].getName().endsWith(".c")) {
+				continue;
+			}
+
+			String expected = new String(Files.readAllBytes(new File(files[i]
+					.getPath() + ".out").toPath()), StandardCharsets.UTF_8);
+
+			FunctionCache cache = new FunctionCache();
+			compile(files[i].getPath(), cache);
+			int generated = cache.misses;
+
+			Vector<String> code = compile(files[i].getPath(), cache);
+			assertEquals(files[i].getName(), generated, cache.hits);
+			assertEquals(files[i].getName(), 0, cache.misses);
+			assertEquals(files[i].getName(), expected, run(code));
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+package Compiler;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+public class InlinerTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public InlinerTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(InlinerTest.class);
+	}
+
+	private Ast.Node getInitializer(Ast.FunctionDeclarationNode func, int i) {
+		return ((Ast.DeclarationNode) func.getBlock().children.get(i).children
+				.get(0)).getInitializer();
+	}
+
+	/**
+	 * Test which calls get inlined
+	 */
+	public void testInline() {
+		Log.debug("testInline");
+
+		try {
+			InputStream is = new FileInputStream(
+					"src/test/input/inline/test1_ok.c");
+			ANTLRInputStream input = new ANTLRInputStream(is);
+			CLexer lexer = new CLexer(input);
+			AstParser parser = new AstParser(new CommonTokenStream(lexer));
+			Ast.Node root = parser.buildAst();
+
+			Visitor visitor = new SymbolTableVisitor();
+			visitor.visit(root);
+			visitor = new SemanticVisitor();
+			visitor.visit(root);
+			Inliner inliner = new Inliner();
+			inliner.visit(root);
+
+			Ast.FunctionDeclarationNode main = (Ast.FunctionDeclarationNode) root.children
+					.lastElement();
+
+			assertTrue("Leaf function should be inlined",
+					getInitializer(main, 0) instanceof Ast.InlinedCallNode);
+			Ast.InlinedCallNode add = (Ast.InlinedCallNode) getInitializer(
+					main, 0);
+			assertTrue("Should have a temporary for every parameter",
+					add.children.size() == 3);
+			assertTrue("Should return the body of the callee",
+					add.getExpression() instanceof Ast.BinaryOperatorNode);
+
+			assertTrue("Function calling other function should not be inlined",
+					getInitializer(main, 1) instanceof Ast.FunctionCallNode);
+			assertTrue("Recursive function should not be inlined",
+					getInitializer(main, 2) instanceof Ast.FunctionCallNode);
+			assertTrue("isdigit should be inlined",
+					getInitializer(main, 3) instanceof Ast.InlinedCallNode);
+
+			// add() inside twice() and the two calls in main
+			assertTrue("Should report 3 inlined calls",
+					inliner.inlinedCalls.size() == 3);
+		} catch(Log.FatalException e) {
+			System.out.println(e.toString());
+			assertTrue(false);
+		} catch(FileNotFoundException e) {
+			fail("Could not load input file");
+			return;
+		} catch(IOException e) {
+			fail("Could not load input file");
+			return;
+		}
+	}
+
+	/**
+	 * Test the size budget
+	 */
+	public void testMaxSize() {
+		Log.debug("testMaxSize");
+
+		int maxSize = Inliner.maxSize;
+		try {
+			InputStream is = new FileInputStream(
+					"src/test/input/inline/test1_ok.c");
+			ANTLRInputStream input = new ANTLRInputStream(is);
+			CLexer lexer = new CLexer(input);
+			AstParser parser = new AstParser(new CommonTokenStream(lexer));
+			Ast.Node root = parser.buildAst();
+
+			Visitor visitor = new SymbolTableVisitor();
+			visitor.visit(root);
+			Inliner.maxSize = 2;
+			Inliner inliner = new Inliner();
+			inliner.visit(root);
+
+			// Only the builtin is left
+			assertTrue("Should report 1 inlined call",
+					inliner.inlinedCalls.size() == 1);
+		} catch(FileNotFoundException e) {
+			fail("Could not load input file");
+			return;
+		} catch(IOException e) {
+			fail("Could not load input file");
+			return;
+		} finally {
+			Inliner.maxSize = maxSize;
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+package Compiler;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class JumpThreadingTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public JumpThreadingTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(JumpThreadingTest.class);
+	}
+
+	private static Vector<String> code(String... instructions) {
+		return new Vector<String>(Arrays.asList(instructions));
+	}
+
+	/**
+	 * Test retargeting chains of jumps
+	 */
+	public void testChains() {
+		Log.debug("testChains");
+
+		JumpThreading pass = new JumpThreading();
+		Vector<String> result = pass.optimize(code("ldc b t", "fjp L1",
+				"ldc i 1", "ujp L2", "L1:", "ujp L3", "L2:", "ujp L3", "L3:",
+				"ldc i 2", "hlt"));
+
+		assertEquals(code("ldc b t", "fjp L3", "ldc i 1", "L3:", "ldc i 2",
+				"hlt"), result);
+	}
+
+	/**
+	 * Test replacing a jump to a return by the return
+	 */
+	public void testReturn() {
+		Log.debug("testReturn");
+
+		JumpThreading pass = new JumpThreading();
+		Vector<String> result = pass.optimize(code("mst 0", "cup 0 f", "hlt",
+				"f:", "ldc b t", "fjp L1", "ujp L2", "L1:", "ldc i 1",
+				"str i 0 0", "L2:", "retp"));
+
+		assertEquals(code("mst 0", "cup 0 f", "hlt", "f:", "ldc b t",
+				"fjp L1", "retp", "L1:", "ldc i 1", "str i 0 0", "L2:", "retp"),
+				result);
+	}
+
+	/**
+	 * Test moving a nested function out of the enclosing function
+	 */
+	public void testNestedFunction() {
+		Log.debug("testNestedFunction");
+
+		JumpThreading pass = new JumpThreading();
+		Vector<String> result = pass.optimize(code("mst 0", "cup 0 main",
+				"hlt", "main:", "ssp 5", "ujp L0", "g:", "ssp 5", "retp",
+				"L0:", "mst 0", "cup 0 g", "retp", "retp"));
+
+		assertEquals(code("mst 0", "cup 0 main", "hlt", "main:", "ssp 5",
+				"L0:", "mst 0", "cup 0 g", "retp", "g:", "ssp 5", "retp"),
+				result);
+		assertEquals(1, pass.removed);
+		assertEquals(1, pass.unreachable);
+	}
+
+}
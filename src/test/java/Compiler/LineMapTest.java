@@ -0,0 +1,102 @@
+package Compiler;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+
+public class LineMapTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public LineMapTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(LineMapTest.class);
+	}
+
+	private static CodeGenVisitor compile(String file) throws IOException {
+		PrintStream discard = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		});
+		return App.compile(new ANTLRInputStream(new FileInputStream(file)),
+				discard, new Metrics());
+	}
+
+	/**
+	 * Test that the ranges cover every instruction once
+	 */
+	public void testRanges() throws IOException {
+		Log.debug("testRanges");
+
+		CodeGenVisitor code = compile("src/test/input/linemap/test1_ok.c");
+		LineMap map = code.getLineMap();
+
+		int next = 1;
+		for(int i = 0; i < map.ranges.size(); i++) {
+			assertEquals(next, map.ranges.get(i).first);
+			assertTrue(map.ranges.get(i).last >= map.ranges.get(i).first);
+			next = map.ranges.get(i).last + 1;
+		}
+		assertEquals(code.getInstructions().size() + 1, next);
+	}
+
+	/**
+	 * Test the source lines and functions of the instructions
+	 */
+	public void testLines() throws IOException {
+		Log.debug("testLines");
+
+		CodeGenVisitor code = compile("src/test/input/linemap/test1_ok.c");
+		LineMap map = code.getLineMap();
+
+		boolean foundInner = false;
+		boolean foundPrintf = false;
+		for(int i = 0; i < map.ranges.size(); i++) {
+			LineMap.Range range = map.ranges.get(i);
+
+			if(range.function.equals("inner")) {
+				assertTrue(range.line == 4 || range.line == 5);
+				foundInner = true;
+			} else if(range.function.equals("twice")) {
+				assertTrue(range.line >= 3 && range.line <= 7);
+			} else if(range.function.equals("main")) {
+				assertTrue(range.line >= 10 && range.line <= 14);
+			} else if(range.function.equals("printf")) {
+				// Builtins belong to the include
+				assertEquals(1, range.line);
+				foundPrintf = true;
+			}
+		}
+		assertTrue(foundInner);
+		assertTrue(foundPrintf);
+
+		// The call to printf is on line 13
+		for(int i = 0; i < code.getInstructions().size(); i++) {
+			if(code.getInstructions().get(i).equals("cup 3 printf")) {
+				assertEquals(13, map.getLine(i));
+				assertEquals("main2", map.getFunction(i));
+			}
+		}
+	}
+
+}
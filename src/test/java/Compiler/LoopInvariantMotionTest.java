@@ -0,0 +1,94 @@
+package Compiler;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+public class LoopInvariantMotionTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public LoopInvariantMotionTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(LoopInvariantMotionTest.class);
+	}
+
+	private Ast.Node getLoop(Ast.Node root, String function) {
+		for(int i = 0; i < root.children.size(); i++) {
+			if(root.children.get(i) instanceof Ast.FunctionDeclarationNode
+					&& ((Ast.FunctionDeclarationNode) root.children.get(i)).id
+							.equals(function)) {
+				Ast.BlockStatementNode block = ((Ast.FunctionDeclarationNode) root.children
+						.get(i)).getBlock();
+				return block.children.get(block.children.size() - 2);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Test which expressions are moved out of the loops
+	 */
+	public void testLoopInvariantMotion() {
+		Log.debug("testLoopInvariantMotion");
+
+		try {
+			InputStream is = new FileInputStream(
+					"src/test/input/licm/test1_ok.c");
+			ANTLRInputStream input = new ANTLRInputStream(is);
+			CLexer lexer = new CLexer(input);
+			AstParser parser = new AstParser(new CommonTokenStream(lexer));
+			Ast.Node root = parser.buildAst();
+
+			Visitor visitor = new SymbolTableVisitor();
+			visitor.visit(root);
+			LoopInvariantMotion optimizer = new LoopInvariantMotion();
+			optimizer.visit(root);
+
+			// strlen(s), n * 2 and a[1]
+			Ast.ForStatementNode loop = (Ast.ForStatementNode) getLoop(root,
+					"moved");
+			assertEquals(3, loop.invariants);
+			assertTrue(((Ast.DeclarationNode) loop.children.get(4))
+					.getInitializer() instanceof Ast.FunctionCallNode);
+			assertEquals("n is assigned in the loop", 2,
+					getLoop(root, "assigned").children.size());
+			// Only n * 2, change() assigns g
+			assertEquals(3, getLoop(root, "called").children.size());
+			assertEquals("The division may not run", 0,
+					((Ast.ForStatementNode) getLoop(root, "guarded")).invariants);
+			assertEquals(4, optimizer.hoisted.size());
+		} catch(Log.FatalException e) {
+			System.out.println(e.toString());
+			assertTrue(false);
+		} catch(FileNotFoundException e) {
+			fail("Could not load input file");
+			return;
+		} catch(IOException e) {
+			fail("Could not load input file");
+			return;
+		}
+	}
+
+}
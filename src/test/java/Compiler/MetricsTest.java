@@ -0,0 +1,58 @@
+package Compiler;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class MetricsTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public MetricsTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(MetricsTest.class);
+	}
+
+	/**
+	 * Test measuring phases and recording counts
+	 */
+	public void testPhases() {
+		Log.debug("testPhases");
+
+		Metrics metrics = new Metrics();
+		metrics.start("first");
+		StringBuilder garbage = new StringBuilder();
+		for(int i = 0; i < 1000; i++) {
+			garbage.append(i);
+		}
+		// starting a phase stops the previous one
+		metrics.start("second");
+		metrics.stop();
+		metrics.stop();
+		metrics.count("nodes", 42);
+
+		assertEquals(2, metrics.phases.size());
+		assertEquals("first", metrics.phases.get(0).name);
+		assertEquals("second", metrics.phases.get(1).name);
+		assertTrue(metrics.phases.get(0).wallTime >= 0);
+		assertTrue(metrics.phases.get(0).allocatedBytes != 0);
+
+		String json = metrics.toJson();
+		assertTrue(json.contains("\"name\": \"second\""));
+		assertTrue(json.contains("\"nodes\": 42"));
+		assertTrue(metrics.toString().contains("[METRICS] nodes: 42"));
+	}
+
+}
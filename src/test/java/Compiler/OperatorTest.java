@@ -0,0 +1,118 @@
+package Compiler;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+public class OperatorTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public OperatorTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(OperatorTest.class);
+	}
+
+	/**
+	 * Test finding operators by their symbol
+	 */
+	public void testLookup() {
+		Log.debug("testLookup");
+
+		assertEquals(Operator.SUBTRACT, Operator.binary("-"));
+		assertEquals(Operator.NEGATE, Operator.unary("-"));
+		assertEquals(Operator.INCREMENT, Operator.unary("++"));
+		assertNull(Operator.unary("*"));
+		assertNull(Operator.binary("!"));
+
+		for(Operator operator : Operator.values()) {
+			if(operator.arity == 1) {
+				assertEquals(operator, Operator.unary(operator.symbol));
+			} else {
+				assertEquals(operator, Operator.binary(operator.symbol));
+			}
+			assertEquals(operator.symbol, operator.toString());
+		}
+	}
+
+	/**
+	 * Test that the inverse of a comparison is a comparison with the original
+	 * as inverse
+	 */
+	public void testComparisons() {
+		Log.debug("testComparisons");
+
+		int comparisons = 0;
+		for(Operator operator : Operator.values()) {
+			if(operator.rule != Operator.Rule.COMPARISON) {
+				assertNull(operator.inverse);
+				continue;
+			}
+
+			comparisons += 1;
+			Operator inverse = null;
+			for(Operator other : Operator.values()) {
+				if(other.opcode.equals(operator.inverse)) {
+					inverse = other;
+				}
+			}
+			assertNotNull(inverse);
+			assertEquals(operator.opcode, inverse.inverse);
+		}
+		assertEquals(6, comparisons);
+	}
+
+	/**
+	 * Test that every integer operator has its own routine
+	 */
+	public void testRoutines() {
+		Log.debug("testRoutines");
+
+		assertEquals(Operator.REMAINDER, Operator.binary("%"));
+		assertEquals(Operator.COMPLEMENT, Operator.unary("~"));
+
+		int routines = 0;
+		for(Operator operator : Operator.values()) {
+			if(operator.rule == Operator.Rule.INTEGER) {
+				routines += 1;
+				assertEquals(operator, Operator.routine(operator.opcode));
+			} else {
+				assertNull(Operator.routine(operator.opcode));
+			}
+		}
+		assertEquals(6, routines);
+	}
+
+	/**
+	 * Test that a compound assignment is its operation followed by =
+	 */
+	public void testCompoundAssignments() {
+		Log.debug("testCompoundAssignments");
+
+		int compounds = 0;
+		for(Operator operator : Operator.values()) {
+			if(operator.rule != Operator.Rule.COMPOUND_ASSIGNMENT) {
+				assertNull(operator.operation);
+				continue;
+			}
+
+			compounds += 1;
+			assertEquals(operator.operation.symbol + "=", operator.symbol);
+			assertEquals(2, operator.operation.arity);
+		}
+		assertEquals(10, compounds);
+	}
+
+}
@@ -0,0 +1,97 @@
+package Compiler;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+
+public class ProfilerTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public ProfilerTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(ProfilerTest.class);
+	}
+
+	private static Profiler profile(String file) throws IOException {
+		PrintStream discard = new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		});
+		CodeGenVisitor code = App.compile(new ANTLRInputStream(
+				new FileInputStream(file)), discard, new Metrics());
+
+		Profiler profiler = new Profiler(code.getInstructions(),
+				code.getLineMap());
+		profiler.run("");
+		return profiler;
+	}
+
+	private static <K> long sum(Map<K, Long> counts) {
+		long total = 0;
+		for(Long count : counts.values()) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Test that every executed instruction is counted once
+	 */
+	public void testCounts() throws IOException {
+		Log.debug("testCounts");
+
+		Profiler profiler = profile("src/test/input/profile/test1_ok.c");
+
+		assertEquals(profiler.getSteps(), sum(profiler.opcodeCounts));
+		assertEquals(profiler.getSteps(), sum(profiler.functionCounts));
+		assertEquals(profiler.getSteps(), sum(profiler.lineCounts));
+		assertEquals(Long.valueOf(1), profiler.opcodeCounts.get("hlt"));
+	}
+
+	/**
+	 * Test the call graph
+	 */
+	public void testCallGraph() throws IOException {
+		Log.debug("testCallGraph");
+
+		Profiler profiler = profile("src/test/input/profile/test1_ok.c");
+
+		assertEquals(Long.valueOf(1), profiler.callCounts.get("init -> main2"));
+		assertEquals(Long.valueOf(10),
+				profiler.callCounts.get("main2 -> square1"));
+		assertEquals(Long.valueOf(1), profiler.callCounts.get("main2 -> fact0"));
+		assertEquals(Long.valueOf(4), profiler.callCounts.get("fact0 -> fact0"));
+
+		// Recursive calls are included in the outermost call
+		assertEquals(profiler.functionCounts.get("fact0"),
+				profiler.functionTotals.get("fact0"));
+		assertEquals(profiler.functionCounts.get("square1"),
+				profiler.callTotals.get("main2 -> square1"));
+		assertEquals(Long.valueOf(profiler.getSteps()
+				- profiler.functionCounts.get("<start>")),
+				profiler.functionTotals.get("init"));
+	}
+
+}
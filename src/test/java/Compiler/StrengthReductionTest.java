@@ -0,0 +1,83 @@
+package Compiler;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+public class StrengthReductionTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public StrengthReductionTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(StrengthReductionTest.class);
+	}
+
+	private Ast.ForStatementNode getLoop(Ast.Node root, int function) {
+		Ast.FunctionDeclarationNode func = (Ast.FunctionDeclarationNode) root.children
+				.get(function + 1);
+		return (Ast.ForStatementNode) func.getBlock().children.lastElement();
+	}
+
+	/**
+	 * Test which loops get pointers
+	 */
+	public void testStrengthReduction() {
+		Log.debug("testStrengthReduction");
+
+		try {
+			InputStream is = new FileInputStream(
+					"src/test/input/strength/test1_ok.c");
+			ANTLRInputStream input = new ANTLRInputStream(is);
+			CLexer lexer = new CLexer(input);
+			AstParser parser = new AstParser(new CommonTokenStream(lexer));
+			Ast.Node root = parser.buildAst();
+
+			Visitor visitor = new SymbolTableVisitor();
+			visitor.visit(root);
+			StrengthReduction optimizer = new StrengthReduction();
+			optimizer.visit(root);
+
+			// a[i] and a[i + 1]
+			assertEquals(6, getLoop(root, 0).children.size());
+			assertEquals(1, getLoop(root, 0).stride);
+			assertEquals("i is assigned in the loop", 4,
+					getLoop(root, 1).children.size());
+			assertEquals("Address of i is taken", 4,
+					getLoop(root, 2).children.size());
+			assertEquals("Nested function can change i", 4,
+					getLoop(root, 3).children.size());
+			assertEquals(2, optimizer.reduced.size());
+		} catch(Log.FatalException e) {
+			System.out.println(e.toString());
+			assertTrue(false);
+		} catch(FileNotFoundException e) {
+			fail("Could not load input file");
+			return;
+		} catch(IOException e) {
+			fail("Could not load input file");
+			return;
+		}
+	}
+
+}
@@ -4,6 +4,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Vector;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
@@ -325,4 +326,53 @@ public class SymbolTableTest extends TestCase {
 
 	}
 
+	/**
+	 * Test that equal strings and the ends of strings share the pool
+	 */
+	public void testStringPool() throws IOException {
+		Log.debug("testStringPool");
+
+		InputStream is = new FileInputStream(
+				"src/test/input/symboltable/test5_ok.c");
+		CLexer lexer = new CLexer(new ANTLRInputStream(is));
+		AstParser parser = new AstParser(new CommonTokenStream(lexer));
+		Ast.FileNode root = (Ast.FileNode) parser.buildAst();
+
+		SymbolTableVisitor visitor = new SymbolTableVisitor();
+		visitor.visit(root);
+
+		// "%d\n" holds "d\n" and "", "%c\n" is stored on its own
+		assertEquals(2, root.stringLiterals.size());
+		assertEquals(8, visitor.stringCounter);
+		assertEquals(16, visitor.stringLiteralSize);
+
+		String pool = "";
+		for(int i = 0; i < root.stringLiterals.size(); i++) {
+			pool += root.stringLiterals.get(i) + "\0";
+		}
+		Vector<Ast.StringNode> strings = new Vector<Ast.StringNode>();
+		findStrings(root, strings);
+		assertEquals(5, strings.size());
+		for(int i = 0; i < strings.size(); i++) {
+			Ast.StringNode string = strings.get(i);
+			assertEquals(string.value + "\0", pool.substring(
+					string.stringPosition, string.stringPosition
+							+ string.value.length() + 1));
+		}
+		assertEquals(strings.get(0).stringPosition,
+				strings.get(1).stringPosition);
+	}
+
+	private static void findStrings(Ast.Node node,
+			Vector<Ast.StringNode> strings) {
+		if(node instanceof Ast.StringNode) {
+			strings.add((Ast.StringNode) node);
+		}
+		for(int i = 0; i < node.children.size(); i++) {
+			if(node.children.get(i) != null) {
+				findStrings(node.children.get(i), strings);
+			}
+		}
+	}
+
 }
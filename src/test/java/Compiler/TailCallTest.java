@@ -0,0 +1,81 @@
+package Compiler;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+public class TailCallTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public TailCallTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(TailCallTest.class);
+	}
+
+	private Ast.ReturnStatementNode getLastReturn(Ast.Node root, int function) {
+		Ast.FunctionDeclarationNode func = (Ast.FunctionDeclarationNode) root.children
+				.get(function);
+		return (Ast.ReturnStatementNode) func.getBlock().children.lastElement();
+	}
+
+	/**
+	 * Test which returns are tail calls
+	 */
+	public void testTailCalls() {
+		Log.debug("testTailCalls");
+
+		try {
+			InputStream is = new FileInputStream(
+					"src/test/input/tailcall/test1_ok.c");
+			ANTLRInputStream input = new ANTLRInputStream(is);
+			CLexer lexer = new CLexer(input);
+			AstParser parser = new AstParser(new CommonTokenStream(lexer));
+			Ast.Node root = parser.buildAst();
+
+			Visitor visitor = new SymbolTableVisitor();
+			visitor.visit(root);
+			TailCallOptimizer optimizer = new TailCallOptimizer();
+			optimizer.visit(root);
+
+			assertTrue("Should be a tail call",
+					getLastReturn(root, 0).tailCall);
+			assertTrue("Result of call is used, not a tail call",
+					!getLastReturn(root, 1).tailCall);
+			assertTrue("Address of local is taken, not a tail call",
+					!getLastReturn(root, 2).tailCall);
+			assertTrue("Should report 1 tail call",
+					optimizer.tailCalls.size() == 1);
+		} catch(Log.FatalException e) {
+			System.out.println(e.toString());
+			assertTrue(false);
+		} catch(FileNotFoundException e) {
+			fail("Could not load input file");
+			return;
+		} catch(IOException e) {
+			fail("Could not load input file");
+			return;
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package Compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Vector;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+
+public class WatcherTest extends TestCase {
+
+	private static final Path input = Paths.get("src/test/input/incremental");
+
+	private Path directory;
+	private ByteArrayOutputStream log;
+	private Watcher watcher;
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public WatcherTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(WatcherTest.class);
+	}
+
+	@Override
+	protected void setUp() throws IOException {
+		directory = Files.createTempDirectory("watch");
+		log = new ByteArrayOutputStream();
+		watcher = new Watcher(directory);
+		watcher.log = new PrintStream(log);
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		watcher.stop();
+		File[] files = directory.toFile().listFiles();
+		for(int i = 0; i < files.length; i++) {
+			files[i].delete();
+		}
+		directory.toFile().delete();
+	}
+
+	private void copy(String from, String to) throws IOException {
+		Files.copy(input.resolve(from), directory.resolve(to),
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Run the code the watcher wrote
+	 *
+	 * @return the output, null if the file isn't there or not complete yet
+	 */
+	private String run(String file) throws IOException {
+		if(!Files.exists(directory.resolve(file))) {
+			return null;
+		}
+		try {
+			return new PMachine(new Vector<String>(Files.readAllLines(
+					directory.resolve(file), StandardCharsets.UTF_8))).run("");
+		} catch(PMachine.PMachineException e) {
+			return null;
+		}
+	}
+
+	private static String run(Path file) throws IOException {
+		PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+		return new PMachine(App.compile(
+				new ANTLRInputStream(Files.newInputStream(file)), discard,
+				new Metrics()).getInstructions()).run("");
+	}
+
+	/**
+	 * Test compiling the files in the directory
+	 */
+	public void testCompile() throws IOException {
+		Log.debug("testCompile");
+
+		copy("test1_ok.c", "a.c");
+		Files.write(directory.resolve("b.c"),
+				"void main() { x = 1; }".getBytes(StandardCharsets.UTF_8));
+		watcher.compileAll();
+
+		assertEquals(run(input.resolve("test1_ok.c")), run("a.p"));
+		assertFalse(Files.exists(directory.resolve("b.p")));
+
+		String report = new String(log.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(report.contains("[WATCH] a.c compiled in "));
+		assertTrue(report.contains("(0 declaration(s) cached, 5 generated)"));
+		assertTrue(report.contains("[WATCH] b.c failed"));
+
+		// Only square is generated again
+		copy("test1_edit_ok.c", "a.c");
+		assertTrue(watcher.compile(directory.resolve("a.c")));
+		assertEquals(run(input.resolve("test1_edit_ok.c")), run("a.p"));
+		report = new String(log.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(report.contains("(4 declaration(s) cached, 1 generated)"));
+	}
+
+	/**
+	 * Test recompiling a file when it changes
+	 */
+	public void testWatch() throws Exception {
+		Log.debug("testWatch");
+
+		// The compiler isn't thread safe, compile before the watcher runs
+		String first = run(input.resolve("test1_ok.c"));
+		String second = run(input.resolve("test1_edit_ok.c"));
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					watcher.run();
+				} catch(InterruptedException e) {
+					// Test is over
+				}
+			}
+		});
+		thread.start();
+
+		try {
+			copy("test1_ok.c", "a.c");
+			for(int i = 0; i < 200 && !first.equals(run("a.p")); i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(first, run("a.p"));
+
+			copy("test1_edit_ok.c", "a.c");
+			for(int i = 0; i < 200 && !second.equals(run("a.p")); i++) {
+				Thread.sleep(50);
+			}
+			assertEquals(second, run("a.p"));
+		} finally {
+			watcher.stop();
+			thread.join();
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package Compiler;
+
+import java.util.Vector;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+
+public class WorkloadGeneratorTest extends TestCase {
+
+	/**
+	 * Create the test case
+	 *
+	 * @param testName
+	 *            name of the test case
+	 */
+	public WorkloadGeneratorTest(String testName) {
+		super(testName);
+		Log.debug = false;
+		Log.exception = true;
+	}
+
+	/**
+	 * @return the suite of tests being tested
+	 */
+	public static Test suite() {
+		return new TestSuite(WorkloadGeneratorTest.class);
+	}
+
+	private Vector<String> compile(String source) {
+		CLexer lexer = new CLexer(new ANTLRInputStream(source));
+		AstParser parser = new AstParser(new CommonTokenStream(lexer));
+		Ast.Node root = parser.buildAst();
+
+		Visitor visitor = new SymbolTableVisitor();
+		visitor.visit(root);
+		visitor = new SemanticVisitor();
+		visitor.visit(root);
+
+		return root.code();
+	}
+
+	/**
+	 * Test if generated programs compile with every knob turned up
+	 */
+	public void testValid() {
+		Log.debug("testValid");
+
+		WorkloadGenerator generator = new WorkloadGenerator();
+		generator.functions = 20;
+		generator.globals = 50;
+		generator.depth = 40;
+		generator.nested = 3;
+		generator.initializer = 64;
+		generator.printfs = 4;
+
+		try {
+			assertTrue(compile(generator.generate()).size() > 0);
+
+			generator.globals = 0;
+			generator.nested = 0;
+			generator.initializer = 0;
+			assertTrue(compile(generator.generate()).size() > 0);
+		} catch(Log.FatalException e) {
+			System.out.println(e.toString());
+			assertTrue(false);
+		}
+	}
+
+	/**
+	 * Test if the same seed gives the same program
+	 */
+	public void testSeed() {
+		Log.debug("testSeed");
+
+		WorkloadGenerator generator = new WorkloadGenerator();
+		String program = generator.generate();
+		assertEquals(program, generator.generate());
+
+		generator.seed = 1;
+		assertTrue(!program.equals(generator.generate()));
+	}
+
+}